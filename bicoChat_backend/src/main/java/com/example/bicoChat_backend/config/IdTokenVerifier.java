@@ -0,0 +1,55 @@
+package com.example.bicoChat_backend.config;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Identity of a client from its Firebase ID token, shared by STOMP CONNECT and the REST endpoints
+ * that need to know who is asking. With bicochat.ws.dev-user-header=true (local runs, embedded store)
+ * a plain user id is accepted instead.
+ */
+@Component
+public class IdTokenVerifier {
+
+    private static final String BEARER = "Bearer ";
+
+    // missing when the embedded store is selected
+    @Autowired(required = false)
+    private FirebaseAuth firebaseAuth;
+
+    @Value("${bicochat.ws.dev-user-header:false}")
+    private boolean devUserHeader;
+
+    /**
+     * @param authorization "Bearer <ID token>", may be null
+     * @param devUserId user id sent in clear, only accepted in dev mode, may be null
+     * @return the uid, null if the client is not authenticated
+     */
+    public String uidOf(String authorization, String devUserId) {
+        if (authorization != null && authorization.startsWith(BEARER)) {
+            return verify(authorization.substring(BEARER.length()));
+        }
+        if (devUserHeader && devUserId != null && !devUserId.isBlank()) {
+            return devUserId;
+        }
+        return null;
+    }
+
+    /**
+     * @return the uid of a valid ID token, null otherwise
+     */
+    public String verify(String idToken) {
+        if (firebaseAuth == null || idToken == null || idToken.isBlank()) {
+            return null;
+        }
+        try {
+            return firebaseAuth.verifyIdToken(idToken).getUid();
+        } catch (FirebaseAuthException | IllegalArgumentException e) {
+            System.err.println("Invalid ID token: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bicoChat_backend.config;
+
+import com.example.bicoChat_backend.service.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports every inbound STOMP frame to the presence service: heartbeats keep a session alive,
+ * the other frames also count as user activity
+ */
+@Component
+public class PresenceInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type != null && type != SimpMessageType.CONNECT && type != SimpMessageType.DISCONNECT) {
+            presenceService.onFrame(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()),
+                    type != SimpMessageType.HEARTBEAT);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.bicoChat_backend.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Authenticates the REST endpoints that answer per user (see {@link WebMvcConfig}) with the same
+ * identity check as STOMP CONNECT: "Authorization: Bearer <Firebase ID token>", or the access_token
+ * parameter for EventSource, which cannot send headers. The uid is left in the {@link #UID} request
+ * attribute; requests without a valid identity get 401.
+ */
+@Component
+public class RestAuthInterceptor implements HandlerInterceptor {
+
+    public static final String UID = "bicochat.uid";
+
+    @Autowired
+    private IdTokenVerifier idTokenVerifier;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null && request.getParameter("access_token") != null) {
+            authorization = "Bearer " + request.getParameter("access_token");
+        }
+        String uid = idTokenVerifier.uidOf(authorization, request.getHeader("X-User-Id"));
+        if (uid == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        request.setAttribute(UID, uid);
+        return true;
+    }
+}
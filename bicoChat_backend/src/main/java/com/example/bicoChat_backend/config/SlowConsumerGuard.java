@@ -0,0 +1,124 @@
+package com.example.bicoChat_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Send limits per WebSocket session, so that a slow client only slows itself down.
+ *
+ * This is the only buffering layer of the sessions: {@link WebSocketBrokerConfiguration} has the
+ * STOMP handler decorate every session here instead of with its default decorator, with the limits of
+ * the transport registration. Frames for a session that is still writing are buffered instead of
+ * blocking the outbound thread. When the buffer goes over bicochat.ws.send-buffer-limit-bytes the policy
+ * decides: "terminate" (the default) closes the session, and the client resubscribes and reloads on
+ * reconnect; "drop" discards the oldest buffered frames, which only /topic/messages/{chatId} can detect
+ * (sequence gap): inbox, receipts, chat summaries and typing frames are lost silently. A single write taking longer than bicochat.ws.send-time-limit-ms
+ * always closes it. The buffer of every session is exposed for the metrics.
+ */
+@Component
+public class SlowConsumerGuard {
+
+    private final Map<String, MeteredSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong terminated = new AtomicLong();
+
+    @Value("${bicochat.ws.overflow:terminate}")
+    private String overflow;
+
+    /**
+     * Decorate a new session, tracked until {@link #sessionClosed}
+     */
+    public WebSocketSession decorate(WebSocketSession session, int sendTimeLimitMs, int sendBufferLimitBytes) {
+        MeteredSession metered = new MeteredSession(new CountingSession(session), sendTimeLimitMs, sendBufferLimitBytes,
+                "drop".equalsIgnoreCase(overflow) ? OverflowStrategy.DROP : OverflowStrategy.TERMINATE);
+        sessions.put(session.getId(), metered);
+        return metered;
+    }
+
+    public void sessionClosed(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getTerminated() {
+        return terminated.get();
+    }
+
+    /**
+     * Sessions with the most buffered bytes first
+     * @param limit max number of sessions returned
+     */
+    public List<Map<String, Object>> getSlowestSessions(int limit) {
+        List<MeteredSession> slowest = new ArrayList<>(sessions.values());
+        slowest.sort(Comparator.comparingInt(MeteredSession::getBufferSize).reversed());
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (MeteredSession session : slowest.subList(0, Math.min(limit, slowest.size()))) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("sessionId", session.getId());
+            metrics.put("bufferedBytes", session.getBufferSize());
+            metrics.put("sendingForMs", session.getTimeSinceSendStarted());
+            metrics.put("framesQueued", session.queued.get());
+            metrics.put("framesWritten", session.written.get());
+            result.add(metrics);
+        }
+        return result;
+    }
+
+    /**
+     * Buffering decorator that counts the frames handed to it and the ones actually written
+     */
+    private class MeteredSession extends ConcurrentWebSocketSessionDecorator {
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong written;
+
+        private MeteredSession(CountingSession counting, int sendTimeLimitMs, int sendBufferLimitBytes,
+                               OverflowStrategy overflowStrategy) {
+            super(counting, sendTimeLimitMs, sendBufferLimitBytes, overflowStrategy);
+            this.written = counting.written;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            queued.incrementAndGet();
+            try {
+                super.sendMessage(message);
+            } catch (SessionLimitExceededException e) {
+                terminated.incrementAndGet();
+                System.err.println("Closing slow WebSocket session " + getId() + ": " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    private static class CountingSession extends WebSocketSessionDecorator {
+        private final AtomicLong written = new AtomicLong();
+
+        private CountingSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            written.incrementAndGet();
+        }
+    }
+}
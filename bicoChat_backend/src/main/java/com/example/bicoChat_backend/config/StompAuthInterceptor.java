@@ -0,0 +1,43 @@
+package com.example.bicoChat_backend.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates STOMP sessions on CONNECT with the Firebase ID token sent in the
+ * "Authorization: Bearer ..." native header; the session principal is the uid.
+ * With bicochat.ws.dev-user-header=true (local runs, embedded store) an "X-User-Id" header is accepted instead.
+ * Connections without a valid identity are refused.
+ */
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private IdTokenVerifier idTokenVerifier;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String uid = authenticate(accessor);
+        if (uid == null) {
+            throw new MessageDeliveryException(message, "Unauthorized STOMP connection");
+        }
+        accessor.setUser(new StompPrincipal(uid));
+        return message;
+    }
+
+    private String authenticate(StompHeaderAccessor accessor) {
+        return idTokenVerifier.uidOf(accessor.getFirstNativeHeader("Authorization"), accessor.getFirstNativeHeader("X-User-Id"));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bicoChat_backend.config;
+
+import java.security.Principal;
+
+/**
+ * Identity of an authenticated STOMP session: the Firebase uid, which is also the name used by
+ * user destinations (/user/{uid}/queue/...)
+ */
+public record StompPrincipal(String uid) implements Principal {
+
+    @Override
+    public String getName() {
+        return uid;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bicoChat_backend.config;
+
+import com.example.bicoChat_backend.service.Bulkhead;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Separate bulkheads for user facing reads, writes and listener callbacks, so a flood of one kind
+ * (or a stalled store) cannot take the capacity of the others
+ */
+@Configuration
+public class StoreBulkheadConfig {
+
+    @Bean
+    public Bulkhead readBulkhead(@Value("${bicochat.store.reads.max-concurrent:256}") int maxConcurrent,
+                                 @Value("${bicochat.store.reads.max-queued:2048}") int maxQueued,
+                                 @Value("${bicochat.store.reads.timeout-ms:5000}") long timeoutMs) {
+        return new Bulkhead("reads", maxConcurrent, maxQueued, timeoutMs, ForkJoinPool.commonPool());
+    }
+
+    @Bean
+    public Bulkhead writeBulkhead(@Value("${bicochat.store.writes.max-concurrent:1024}") int maxConcurrent,
+                                  @Value("${bicochat.store.writes.max-queued:4096}") int maxQueued,
+                                  @Value("${bicochat.store.writes.timeout-ms:10000}") long timeoutMs) {
+        return new Bulkhead("writes", maxConcurrent, maxQueued, timeoutMs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Listener callbacks run one at a time, in event order, on their own thread instead of the
+     * store event thread (which also feeds the path cache). They are never dropped or timed out: a lost
+     * event would leave the broadcasts and the search index stale for good. Their queue is bounded
+     * instead: when it is full the store event thread waits for room (see {@link Bulkhead#executeWaiting}),
+     * so a slow listener holds back the store client rather than filling the heap.
+     */
+    @Bean
+    public Bulkhead listenerBulkhead(@Value("${bicochat.store.listeners.max-queued:10000}") int maxQueued) {
+        // not a bean: an Executor bean would replace Spring Boot's applicationTaskExecutor
+        ExecutorService listenerThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-listeners");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new Bulkhead("listener events", 1, maxQueued, 0, listenerThread);
+    }
+}
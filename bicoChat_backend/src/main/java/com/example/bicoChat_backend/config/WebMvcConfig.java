@@ -3,6 +3,7 @@ package com.example.bicoChat_backend.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
@@ -21,4 +22,18 @@ public class WebMvcConfig {
             }
         };
     }
+
+    /**
+     * Endpoints that answer with the data of the caller: the uid comes from the ID token
+     */
+    @Bean
+    public WebMvcConfigurer authConfigurer(RestAuthInterceptor restAuthInterceptor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(restAuthInterceptor)
+                        .addPathPatterns("/api/messages/search", "/api/stream/**");
+            }
+        };
+    }
 }
@@ -0,0 +1,50 @@
+package com.example.bicoChat_backend.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * STOMP over WebSocket setup (what @EnableWebSocketMessageBroker imports, configured by
+ * {@link WebSocketConfig}), except that sessions are decorated by the {@link SlowConsumerGuard}
+ * instead of the default send buffer, so that the overflow policy applies and the buffers can be
+ * measured.
+ */
+@Configuration
+public class WebSocketBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Autowired
+    private SlowConsumerGuard slowConsumerGuard;
+
+    @Override
+    @Bean
+    public WebSocketHandler subProtocolWebSocketHandler(
+            @Qualifier("clientInboundChannel") AbstractSubscribableChannel clientInboundChannel,
+            @Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel) {
+        SubProtocolWebSocketHandler handler = new SubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel) {
+            @Override
+            protected WebSocketSession decorateSession(WebSocketSession session) {
+                // limits from the transport registration (bicochat.ws.send-*)
+                return slowConsumerGuard.decorate(session, getSendTimeLimit(), getSendBufferSizeLimit());
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    slowConsumerGuard.sessionClosed(session.getId());
+                }
+            }
+        };
+        handler.setPhase(getPhase());
+        return handler;
+    }
+}
@@ -1,17 +1,81 @@
 package com.example.bicoChat_backend.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import java.util.concurrent.Executor;
+
+/**
+ * Endpoints, broker, channels and transport of STOMP, applied by {@link WebSocketBrokerConfiguration}
+ */
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompAuthInterceptor stompAuthInterceptor;
+
+    @Autowired
+    private PresenceInterceptor presenceInterceptor;
+
+    @Value("${bicochat.ws.inbound.threads:16}")
+    private int inboundThreads;
+
+    @Value("${bicochat.ws.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${bicochat.ws.outbound.threads:16}")
+    private int outboundThreads;
+
+    @Value("${bicochat.ws.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${bicochat.ws.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${bicochat.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${bicochat.ws.send-buffer-limit-bytes:524288}")
+    private int sendBufferLimitBytes;
+
+    @Value("${bicochat.ws.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    // "simple" (in-memory broker, one instance) or "relay" (external STOMP broker shared by the instances)
+    @Value("${bicochat.ws.broker:simple}")
+    private String brokerMode;
+
+    @Value("${bicochat.ws.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${bicochat.ws.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${bicochat.ws.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${bicochat.ws.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${bicochat.ws.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${bicochat.ws.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // frames of one session are handled in order even on a pool (typing start/stop, sends)
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS(); // SockJS
@@ -19,8 +83,73 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic");
+        if ("relay".equals(brokerMode)) {
+            // subscriptions live in the external broker, so any instance can publish to any client;
+            // the two broadcast topics share user sessions and unresolved /user destinations between instances
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            // heartbeats in both directions: the client ones keep presence alive
+            ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+            heartbeatScheduler.setPoolSize(1);
+            heartbeatScheduler.setThreadNamePrefix("stomp-heartbeat-");
+            heartbeatScheduler.initialize();
+            registry.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                    .setTaskScheduler(heartbeatScheduler);
+        }
+        // frames to one session leave in order even on a pool (sequence numbers stay gap free)
+        registry.setPreservePublishOrder(true);
         registry.setApplicationDestinationPrefixes("/app");
+        // /user/queue/inbox is resolved to the session of the authenticated uid
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor, presenceInterceptor);
+        registration.executor(channelExecutor("stomp-inbound", inboundThreads, inboundQueueCapacity));
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutor("stomp-outbound", outboundThreads, outboundQueueCapacity));
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // applied by the SlowConsumerGuard, which decorates every session
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferLimitBytes);
+    }
+
+    /**
+     * Bounded executor of a client channel: a fixed pool with a bounded queue (a full queue rejects the
+     * frame), or virtual threads with at most "threads" running at once
+     */
+    private Executor channelExecutor(String name, int threads, int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(name + "-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(threads);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(name + "-");
+        executor.initialize();
+        return executor;
     }
 }
 
@@ -2,6 +2,7 @@ package com.example.bicoChat_backend.config.firebase;
 
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
@@ -10,7 +11,11 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 
+/**
+ * Firebase beans, skipped when the embedded store is selected (bicochat.store=embedded)
+ */
 @Configuration
+@ConditionalOnProperty(name = "bicochat.store", havingValue = "firebase", matchIfMissing = true)
 public class FirebaseBeansConfig {
 
 
@@ -5,6 +5,7 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.mail.javamail.JavaMailSender;
@@ -20,44 +21,44 @@ import java.util.Properties;
 @Configuration
 public class FirebaseConfig {
 
-    @Value("${PRIVATE_KEY_ID}")
+    @Value("${PRIVATE_KEY_ID:}")
     private String private_key_id;
 
-    @Value("${PRIVATE_KEY}")
+    @Value("${PRIVATE_KEY:}")
     private String private_key;
 
-    @Value("${CLIENT_EMAIL}")
+    @Value("${CLIENT_EMAIL:}")
     private String client_email;
 
-    @Value("${CLIENT_ID}")
+    @Value("${CLIENT_ID:}")
     private String client_id;
 
-    @Value("${AUTH_URI}")
+    @Value("${AUTH_URI:}")
     private String auth_uri;
 
-    @Value("${TOKEN_URI}")
+    @Value("${TOKEN_URI:}")
     private String token_uri;
 
-    @Value("${AUTH_PROVIDER_X509_CERT_URL}")
+    @Value("${AUTH_PROVIDER_X509_CERT_URL:}")
     private String auth_provider_x509_cert_url;
 
-    @Value("${CLIENT_X509_CERT_URL}")
+    @Value("${CLIENT_X509_CERT_URL:}")
     private String client_x509_cert_url;
 
-    @Value("${DATABASE_URL}")
+    @Value("${DATABASE_URL:}")
     private String database_url;
 
     // the following 4 variables are needed for setting the email address to send verification email
-    @Value("${EMAIL_USERNAME}")
+    @Value("${EMAIL_USERNAME:}")
     private String mail_username;
 
-    @Value("${EMAIL_ADDITIONAL_PSW}")
+    @Value("${EMAIL_ADDITIONAL_PSW:}")
     private String email_additional_psw;
 
-    @Value("${EMAIL_HOST}")
+    @Value("${EMAIL_HOST:}")
     private String email_host;
 
-    @Value("${EMAIL_PORT}")
+    @Value("${EMAIL_PORT:587}")
     private int email_port;
 
     private String type;
@@ -73,6 +74,7 @@ public class FirebaseConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(name = "bicochat.store", havingValue = "firebase", matchIfMissing = true)
     public FirebaseApp firebaseApp() throws IOException {
         if (FirebaseApp.getApps().isEmpty()) {
             // Building the JSON file
@@ -1,21 +1,24 @@
 package com.example.bicoChat_backend.controller;
 
-import com.example.bicoChat_backend.dto.response.ChatResponse;
-import com.example.bicoChat_backend.model.Chat;
+import com.example.bicoChat_backend.dto.response.ChatEvent;
+import com.example.bicoChat_backend.dto.response.ChatListSnapshot;
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import com.example.bicoChat_backend.service.BroadcastScheduler;
 import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.ChatStore;
+import com.example.bicoChat_backend.service.ChatSummaryFeed;
+import com.example.bicoChat_backend.service.ListenerOwnership;
 import com.example.bicoChat_backend.service.FirebaseService;
-import com.google.firebase.database.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
 
 import javax.annotation.PostConstruct;
+import java.net.URI;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/chats")
@@ -28,38 +31,85 @@ public class ChatController {
     private FirebaseService firebaseService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private BroadcastScheduler broadcastScheduler;
 
+    @Autowired
+    private ChatSummaryFeed chatSummaryFeed;
+
+    @Autowired
+    private ListenerOwnership listenerOwnership;
+
+    /**
+     * Only the instance publishing /topic/chats keeps the feed: it is seeded with the whole index
+     * first, so the replay of the existing chats by the listener is not published again
+     */
     @PostConstruct
     public void initFirebaseChatListener() {
-        firebaseService.getWithTypeIndicator("/chats", new GenericTypeIndicator<Map<String, Chat>>() {})
-                .thenAccept(chatsMap -> {
-                    firebaseService.getDatabaseReference().child("chats")
-                            .addValueEventListener(new ValueEventListener() {
-                                @Override
-                                public void onDataChange(DataSnapshot snapshot) {
-                                    chatService.getAllChats().thenAccept(chats -> {
-                                        messagingTemplate.convertAndSend("/topic/chats", chats);
-                                    });
-                                }
-
-                                @Override
-                                public void onCancelled(DatabaseError error) {
-                                    System.err.println("Error on /chats: " + error.getMessage());
-                                }
-                            });
-                });
+        if (!listenerOwnership.ownsGlobal()) {
+            return;
+        }
+        firebaseService.get("chatMeta", Object.class).whenComplete((rawMeta, error) -> {
+            if (error != null) {
+                System.err.println("Cannot seed the chat list feed, the existing chats will be published again: "
+                        + error.getMessage());
+            } else {
+                chatSummaryFeed.seed(rawMeta);
+            }
+            // one delta per changed chat instead of the whole list at every change
+            firebaseService.addChildListener("chatMeta", new ChatStore.ChildListener() {
+                @Override
+                public void onChildAdded(String chatId, Object summary) {
+                    publish(ChatEvent.ADDED, chatId, summary);
+                }
+
+                @Override
+                public void onChildChanged(String chatId, Object summary) {
+                    publish(ChatEvent.CHANGED, chatId, summary);
+                }
+
+                @Override
+                public void onChildRemoved(String chatId, Object summary) {
+                    publish(ChatEvent.REMOVED, chatId, null);
+                }
+
+                @Override
+                public void onCancelled(Exception error) {
+                    System.err.println("Error on /chatMeta: " + error.getMessage());
+                }
+            });
+        });
+    }
+
+    private void publish(String type, String chatId, Object rawSummary) {
+        ChatEvent event = chatSummaryFeed.apply(type, chatId, rawSummary);
+        if (event != null) {
+            broadcastScheduler.publish("/topic/chats", event);
+        }
     }
 
     @GetMapping
-    public List<ChatResponse> getAllChats() throws ExecutionException, InterruptedException {
-        return chatService.getAllChats().get();
+    public CompletableFuture<List<ChatSummary>> getAllChats() {
+        return chatService.getAllChats();
+    }
+
+    /**
+     * Chat list with the epoch and version of the last /topic/chats event it includes, to (re)sync the
+     * event stream. Only the publishing instance has it: the others redirect there.
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<ChatListSnapshot> getSnapshot() {
+        if (!listenerOwnership.ownsGlobal()) {
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(URI.create(listenerOwnership.globalOwnerUrl() + "/api/chats/snapshot"))
+                    .build();
+        }
+        return ResponseEntity.ok(chatSummaryFeed.snapshot());
     }
 
     // Aggiungi il nuovo metodo per ottenere una chat per ID
     @GetMapping("/{chatId}")
-    public ResponseEntity<ChatResponse> getChatById(@PathVariable String chatId) throws ExecutionException, InterruptedException {
-        Optional<ChatResponse> chatResponse = chatService.getChatById(chatId).get();
-        return chatResponse.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    public CompletableFuture<ResponseEntity<ChatSummary>> getChatById(@PathVariable String chatId) {
+        return chatService.getChatById(chatId)
+                .thenApply(chatSummary -> chatSummary.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build()));
     }
 }
@@ -0,0 +1,69 @@
+package com.example.bicoChat_backend.controller;
+
+import com.example.bicoChat_backend.dto.response.SendReceipt;
+import com.example.bicoChat_backend.model.Message;
+import com.example.bicoChat_backend.service.ListenerOwnership;
+import com.example.bicoChat_backend.service.MessageRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Endpoints called by the other instances of the cluster, never by clients: requests must carry the
+ * shared secret ({@link MessageRouter#SECRET_HEADER}), others get 403.
+ */
+@RestController
+@RequestMapping("/internal")
+public class ClusterController {
+
+    @Autowired
+    private ListenerOwnership listenerOwnership;
+
+    @Autowired
+    private MessageRouter messageRouter;
+
+    /**
+     * A send forwarded by an instance that does not own the chat: stored here, answered with its receipt.
+     * 409 if this instance does not own the chat either (instances configured differently).
+     */
+    @PostMapping("/chats/{chatId}/messages")
+    public CompletableFuture<ResponseEntity<SendReceipt>> storeForwardedMessage(
+            @PathVariable String chatId,
+            @RequestHeader(value = MessageRouter.SECRET_HEADER, required = false) String secret,
+            @RequestBody Map<String, Object> payload) {
+        if (!listenerOwnership.isClusterSecret(secret)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        if (!listenerOwnership.owns(chatId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).build());
+        }
+        Object sender = payload.get("sender");
+        Object content = payload.get("content");
+        if (sender == null || content == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        Message message = new Message();
+        message.setSender(sender.toString());
+        message.setContent(content.toString());
+        message.setTimestamp(payload.get("timestamp") instanceof Number timestamp
+                ? timestamp.longValue() : System.currentTimeMillis());
+        message.setRead(false);
+        String clientRef = payload.get("clientRef") != null ? payload.get("clientRef").toString() : null;
+
+        return messageRouter.sendLocally(chatId, message, clientRef)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+                    }
+                    throw ex instanceof CompletionException completion ? completion : new CompletionException(cause);
+                });
+    }
+}
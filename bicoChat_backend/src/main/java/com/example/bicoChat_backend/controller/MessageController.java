@@ -1,27 +1,70 @@
 package com.example.bicoChat_backend.controller;
 
 
+import com.example.bicoChat_backend.config.RestAuthInterceptor;
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import com.example.bicoChat_backend.dto.response.MessageEvent;
+import com.example.bicoChat_backend.dto.response.MessagePageResponse;
+import com.example.bicoChat_backend.dto.response.MessageSearchResponse;
+import com.example.bicoChat_backend.dto.response.SendReceipt;
 import com.example.bicoChat_backend.model.Message;
+import com.example.bicoChat_backend.service.BroadcastScheduler;
 import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.ChatStore;
+import com.example.bicoChat_backend.service.EpochTimestampMigration;
+import com.example.bicoChat_backend.service.EventStreamHub;
 import com.example.bicoChat_backend.service.FirebaseService;
+import com.example.bicoChat_backend.service.ListenerOwnership;
 
+import com.example.bicoChat_backend.service.MessageIdGenerator;
+import com.example.bicoChat_backend.service.MessageRouter;
+import com.example.bicoChat_backend.service.MessageSearchIndex;
 import com.example.bicoChat_backend.service.MessageService;
-import com.google.firebase.database.*;
+import com.example.bicoChat_backend.service.StoreUnavailableException;
+import com.example.bicoChat_backend.service.StoreValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.PostConstruct;
+import java.security.Principal;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequestMapping("/api/messages")
 public class MessageController {
 
+    private static final Logger log = LoggerFactory.getLogger(MessageController.class);
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+
+    private static final String RECEIPTS = "/queue/receipts";
+
+    private final Map<String, ChatStore.Registration> messageListeners = new ConcurrentHashMap<>();
+
+    // event numbering of each chat, with the time it started
+    private record EventSequence(long epoch, AtomicLong next) {
+        EventSequence(long epoch) {
+            this(epoch, new AtomicLong());
+        }
+    }
+
+    private final Map<String, EventSequence> chatSequences = new ConcurrentHashMap<>();
+
     @Autowired
     private MessageService messageService;
 
@@ -29,77 +72,225 @@ public class MessageController {
     private FirebaseService firebaseService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private BroadcastScheduler broadcastScheduler;
 
     @Autowired
     private ChatService chatService;
 
-    @PostConstruct
-    public void initFirebaseMessageListener() {
-        DatabaseReference chatsRef = firebaseService.getDatabaseReference().child("chats");
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
 
-        chatsRef.addChildEventListener(new ChildEventListener() {
-            @Override
-            public void onChildAdded(DataSnapshot chatSnapshot, String previousChildName) {
-                String chatId = chatSnapshot.getKey();
-                DatabaseReference messagesRef = chatSnapshot.getRef().child("messages");
-                messagesRef.addChildEventListener(new ChildEventListener() {
-                    @Override
-                    public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
-                        sendMessages(chatId);
-                    }
+    @Autowired
+    private ListenerOwnership listenerOwnership;
 
-                    @Override
-                    public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
-                        sendMessages(chatId);
-                    }
+    @Autowired
+    private EventStreamHub eventStreamHub;
 
-                    @Override
-                    public void onChildRemoved(DataSnapshot snapshot) {
-                        sendMessages(chatId);
-                    }
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
 
-                    @Override
-                    public void onChildMoved(DataSnapshot snapshot, String previousChildName) {}
+    @Autowired
+    private MessageRouter messageRouter;
 
-                    @Override
-                    public void onCancelled(DatabaseError error) {
-                        System.err.println("Error on chats/" + chatId + "/messages: " + error.getMessage());
-                    }
-                });
-            }
+    // "true", "false", or empty: on with a single instance, off with several
+    @Value("${bicochat.search.enabled:}")
+    private String searchSetting;
 
-            @Override
-            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {}
+    private boolean searchEnabled;
 
+    @PostConstruct
+    public void initFirebaseMessageListener() {
+        boolean clustered = listenerOwnership.getInstanceCount() > 1;
+        searchEnabled = searchSetting.isBlank() ? !clustered : Boolean.parseBoolean(searchSetting.trim());
+        if (searchEnabled && clustered) {
+            // each instance listens only to the chats it owns, so its index would miss the others
+            throw new IllegalStateException("bicochat.search.enabled=true needs a single instance: "
+                    + "leave it unset with bicochat.cluster.instance-count > 1, or use a shared index");
+        }
+        // chats are discovered from the metadata index, which (unlike chats/) carries no message
+        firebaseService.addChildListener("chatMeta", new ChatStore.ChildListener() {
             @Override
-            public void onChildRemoved(DataSnapshot snapshot) {}
+            public void onChildAdded(String chatId, Object summary) {
+                ChatSummary chatSummary = ChatService.toSummary(chatId, summary);
+                if (searchEnabled) {
+                    messageSearchIndex.chatChanged(chatId, chatSummary.getParticipants());
+                }
+                // with several instances only the owner of the chat listens to its messages
+                if (!listenerOwnership.owns(chatId)) {
+                    return;
+                }
+                // the messages up to the last one at registration are the replay of the existing messages,
+                // not new messages (the index takes them all). Keys are not compared: chats not migrated
+                // yet have UUID keys, so a message is placed by its seq, or by its timestamp without one
+                ChatSummary.ReadWatermark existing = chatSummary.getLastMessageId() != null
+                        ? new ChatSummary.ReadWatermark(chatSummary.getLastMessageSeq(), chatSummary.getLastActivity())
+                        : null;
+                ChatStore.Registration registration = firebaseService.addChildListener("chats/" + chatId + "/messages",
+                        new ChatStore.ChildListener() {
+                            @Override
+                            public void onChildAdded(String messageId, Object message) {
+                                if (searchEnabled) {
+                                    messageSearchIndex.index(chatId, messageId, message);
+                                }
+                                Message added = StoreValues.convert(message, Message.class);
+                                if (added != null && (existing == null || !existing.covers(added))) {
+                                    publish(MessageEvent.ADDED, chatId, messageId, added);
+                                }
+                            }
+
+                            @Override
+                            public void onChildChanged(String messageId, Object message) {
+                                if (searchEnabled) {
+                                    messageSearchIndex.index(chatId, messageId, message);
+                                }
+                                publish(MessageEvent.EDITED, chatId, messageId, message);
+                            }
+
+                            @Override
+                            public void onChildRemoved(String messageId, Object message) {
+                                if (searchEnabled) {
+                                    messageSearchIndex.remove(chatId, messageId);
+                                }
+                                publish(MessageEvent.DELETED, chatId, messageId, null);
+                                if (!MessageIdGenerator.isTimeOrdered(messageId)) {
+                                    publishIfMoved(chatId, messageId, message);
+                                }
+                            }
+
+                            @Override
+                            public void onCancelled(Exception error) {
+                                log.warn("Listener on chats/{}/messages cancelled: {}", chatId, error.getMessage());
+                            }
+                        });
+                ChatStore.Registration previous = messageListeners.put(chatId, registration);
+                if (previous != null) {
+                    previous.remove();
+                }
+            }
 
             @Override
-            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {}
+            public void onChildChanged(String chatId, Object summary) {
+                // participants may change: they decide who finds the messages of the chat
+                if (searchEnabled) {
+                    messageSearchIndex.chatChanged(chatId, ChatService.toSummary(chatId, summary).getParticipants());
+                }
+            }
 
             @Override
-            public void onCancelled(DatabaseError error) {
-                System.err.println("Error on /chats: " + error.getMessage());
+            public void onChildRemoved(String chatId, Object summary) {
+                ChatStore.Registration registration = messageListeners.remove(chatId);
+                if (registration != null) {
+                    registration.remove();
+                }
+                chatSequences.remove(chatId);
+                if (searchEnabled) {
+                    messageSearchIndex.chatRemoved(chatId);
+                }
             }
 
-            private void sendMessages(String chatId) {
-                messageService.getMessagesByChatId(chatId).thenAccept(messages -> {
-                    //System.out.println("Sending messages to topic: /topic/messages/" + chatId + " -> " + messages);
-                    messagingTemplate.convertAndSend("/topic/messages/" + chatId, messages);
-                });
+            @Override
+            public void onCancelled(Exception error) {
+                log.warn("Listener on chatMeta cancelled: {}", error.getMessage());
             }
         });
     }
 
+    /**
+     * Send only the affected message, numbered with the next sequence number of its chat. The numbering
+     * lives in memory and starts again after a restart or when another instance takes the chat over, so
+     * each event also carries the epoch of its numbering: a new epoch is not a gap.
+     */
+    private void publish(String type, String chatId, String messageId, Object rawMessage) {
+        publish(type, chatId, messageId, rawMessage != null ? StoreValues.convert(rawMessage, Message.class) : null);
+    }
+
+    private void publish(String type, String chatId, String messageId, Message message) {
+        if (message != null) {
+            message.setId(messageId);
+        }
+        EventSequence sequence = chatSequences.computeIfAbsent(chatId, id -> new EventSequence(System.currentTimeMillis()));
+        MessageEvent event = new MessageEvent(type, sequence.epoch(), sequence.next().incrementAndGet(), chatId, messageId, message);
+        broadcastScheduler.publish("/topic/messages/" + chatId, event);
+        eventStreamHub.publish(EventStreamHub.chatStream(chatId), type, event);
+    }
+
+    /**
+     * A legacy key may have been removed by {@link EpochTimestampMigration}, which moves the message to a
+     * time ordered id: its replay watermark hides the new key from onChildAdded, so clients would only see
+     * the deletion. If the message is there under its new id, it is published as added.
+     */
+    private void publishIfMoved(String chatId, String legacyKey, Object rawMessage) {
+        String movedId = EpochTimestampMigration.rekeyedId(legacyKey, rawMessage);
+        // straight to the store: a one-off lookup must not leave a cache listener on the message
+        firebaseService.getChatStore().get("chats/" + chatId + "/messages/" + movedId, Object.class)
+                .thenAccept(moved -> {
+                    if (moved != null) {
+                        publish(MessageEvent.ADDED, chatId, movedId, moved);
+                    }
+                })
+                .exceptionally(error -> {
+                    log.warn("Cannot look up moved message {} of chat {}: {}", movedId, chatId, error.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Messages of the chats of the caller containing every word of q, best match first. Answered from
+     * the in-memory index, without reading the store. The caller is authenticated by
+     * {@link RestAuthInterceptor}.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<MessageSearchResponse> searchMessages(
+            @RequestAttribute(RestAuthInterceptor.UID) String uid,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (!searchEnabled) {
+            return ResponseEntity.status(503).build();
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+        return ResponseEntity.ok(messageSearchIndex.search(uid, q, Math.max(0, page), pageSize));
+    }
 
     @GetMapping("/{chatId}")
-    public List<Message> getMessagesByChatId(@PathVariable String chatId) throws ExecutionException, InterruptedException {
-        return messageService.getMessagesByChatId(chatId).get();
+    public CompletableFuture<List<Message>> getMessagesByChatId(@PathVariable String chatId) {
+        return messageService.getMessagesByChatId(chatId);
+    }
+
+    /**
+     * Paginated history: the latest page by default, older pages with "before", newer ones with "after".
+     */
+    @GetMapping("/{chatId}/page")
+    public CompletableFuture<MessagePageResponse> getMessagesPage(
+            @PathVariable String chatId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return messageService.getMessagesPage(chatId, before, after, pageSize);
+    }
+
+    /**
+     * Messages by seq, for clients that noticed a gap in the seq of the events they received.
+     * Ranges far behind the latest message are refused: reload with /page instead.
+     */
+    @GetMapping("/{chatId}/range")
+    public CompletableFuture<ResponseEntity<?>> getMessagesBySeq(
+            @PathVariable String chatId,
+            @RequestParam long fromSeq,
+            @RequestParam(defaultValue = "0") long toSeq) {
+        return chatService.getChatById(chatId).thenCompose(optionalSummary -> {
+            long lastSeq = optionalSummary.map(ChatSummary::getLastSeq).orElse(0L);
+            if (lastSeq - fromSeq >= MAX_PAGE_SIZE) {
+                return CompletableFuture.<ResponseEntity<?>>completedFuture(
+                        ResponseEntity.badRequest().body("Range too far behind the latest message, use /page"));
+            }
+            return messageService.getMessagesBySeq(chatId, fromSeq, toSeq).<ResponseEntity<?>>thenApply(ResponseEntity::ok);
+        });
     }
 
     @PostMapping("/{chatId}/send")
-    public ResponseEntity<?> sendMessage(
+    public CompletableFuture<ResponseEntity<?>> sendMessage(
             @PathVariable String chatId,
             @RequestBody Map<String, String> payload) {
 
@@ -107,22 +298,78 @@ public class MessageController {
         String sender = payload.get("sender");
 
         if (content == null || sender == null) {
-            return ResponseEntity.badRequest().body("Missing content or sender");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Missing content or sender"));
         }
 
         Message newMessage = new Message();
         newMessage.setContent(content);
         newMessage.setSender(sender);
-        newMessage.setTimestamp(java.time.LocalDateTime.now().toString());
+        newMessage.setTimestamp(System.currentTimeMillis());
         newMessage.setRead(false);
 
-        try {
-            Map<String, Object> result = messageService.sendMessage(chatId, newMessage).join();
-            return ResponseEntity.ok(result);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return ResponseEntity.status(500).body("Errore durante l'invio del messaggio");
+        return messageService.sendMessage(chatId, newMessage, payload.get("clientRef"))
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof StoreUnavailableException unavailable) {
+                        throw unavailable; // 503/504, see StoreExceptionHandler
+                    }
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.status(404).body(cause.getMessage());
+                    }
+                    log.error("Send to chat {} failed", chatId, cause);
+                    return ResponseEntity.status(500).body("Errore durante l'invio del messaggio");
+                });
+    }
+
+    /**
+     * Send over the STOMP session: clients send {"content": ..., "clientRef": ...} to /app/chat/{chatId}/send.
+     * The sender is the authenticated user; the message goes through the same pipeline as the REST
+     * send, without holding any thread while it is stored, and the outcome comes back on
+     * /user/queue/receipts. The message itself reaches the chat on /topic/messages/{chatId} as usual.
+     * A client that resends after a lost receipt (e.g. across a reconnect) must reuse its clientRef: the
+     * owner of the chat remembers (uid, clientRef) for a while and answers the repeat with the receipt
+     * of the first send, without storing the message again (see {@link MessageRouter}).
+     */
+    @MessageMapping("/chat/{chatId}/send")
+    public void sendMessageOverSocket(@DestinationVariable String chatId, @Payload Map<String, Object> payload,
+                                      Principal principal) {
+        if (principal == null) {
+            return;
         }
+        String uid = principal.getName();
+        String clientRef = payload.get("clientRef") != null ? payload.get("clientRef").toString() : null;
+        Object content = payload.get("content");
+        if (content == null || content.toString().isBlank()) {
+            messagingTemplate.convertAndSendToUser(uid, RECEIPTS, SendReceipt.failed(clientRef, chatId, "Missing content"));
+            return;
+        }
+
+        Message newMessage = new Message();
+        newMessage.setContent(content.toString());
+        newMessage.setSender(uid);
+        newMessage.setTimestamp(System.currentTimeMillis());
+        newMessage.setRead(false);
+
+        chatService.getParticipants(chatId)
+                .thenCompose(participants -> {
+                    if (!participants.contains(uid)) {
+                        throw new IllegalArgumentException("Not a participant of chat " + chatId);
+                    }
+                    return messageRouter.send(chatId, newMessage, clientRef);
+                })
+                .whenComplete((sent, error) -> {
+                    SendReceipt receipt;
+                    if (error == null) {
+                        receipt = sent;
+                    } else {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        log.warn("STOMP send to chat {} failed: {}", chatId, cause.getMessage());
+                        receipt = SendReceipt.failed(clientRef, chatId, cause instanceof IllegalArgumentException
+                                ? cause.getMessage() : "Errore durante l'invio del messaggio");
+                    }
+                    messagingTemplate.convertAndSendToUser(uid, RECEIPTS, receipt);
+                });
     }
 
     @PutMapping("/{chatId}/update/{messageId}")
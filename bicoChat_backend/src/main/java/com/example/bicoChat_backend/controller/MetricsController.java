@@ -0,0 +1,161 @@
+package com.example.bicoChat_backend.controller;
+
+import com.example.bicoChat_backend.config.SlowConsumerGuard;
+import com.example.bicoChat_backend.service.BroadcastScheduler;
+import com.example.bicoChat_backend.service.Bulkhead;
+import com.example.bicoChat_backend.service.EventStreamHub;
+import com.example.bicoChat_backend.service.FirebaseService;
+import com.example.bicoChat_backend.service.MessageRouter;
+import com.example.bicoChat_backend.service.MessageSearchIndex;
+import com.example.bicoChat_backend.service.PathCache;
+import com.example.bicoChat_backend.service.PresenceService;
+import com.example.bicoChat_backend.service.ProfileLoader;
+import com.example.bicoChat_backend.service.WriteBehindQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Autowired
+    private StoreExceptionHandler storeExceptionHandler;
+
+    @Autowired
+    private BroadcastScheduler broadcastScheduler;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private SlowConsumerGuard slowConsumerGuard;
+
+    @Autowired
+    private EventStreamHub eventStreamHub;
+
+    @Autowired
+    private ProfileLoader profileLoader;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private MessageRouter messageRouter;
+
+    /**
+     * Counters of the path cache, of the single-flight reads, of the write-behind queue and of the
+     * bulkheads, with the requests answered 503/504 because of them and the retried sends answered
+     * with an earlier receipt
+     */
+    @GetMapping("/store")
+    public Map<String, Object> getStoreMetrics() {
+        PathCache cache = firebaseService.getPathCache();
+        WriteBehindQueue writes = firebaseService.getWriteBehindQueue();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cacheHits", cache.getHits());
+        metrics.put("cacheMisses", cache.getMisses());
+        metrics.put("cacheEvictions", cache.getEvictions());
+        metrics.put("cacheSize", cache.getSize());
+        metrics.put("cacheWeightBytes", cache.getWeight());
+        metrics.put("readsRequested", firebaseService.getSingleFlightReads().getCalls());
+        metrics.put("readsIssued", firebaseService.getSingleFlightReads().getExecutions());
+        metrics.put("writesSubmitted", writes.getSubmittedWrites());
+        metrics.put("writeBatchesFlushed", writes.getFlushedBatches());
+        metrics.put("profilesRequested", profileLoader.getRequested());
+        metrics.put("profilesFromMemory", profileLoader.getHits());
+        metrics.put("profilesFetched", profileLoader.getFetched());
+        metrics.put("profileBatches", profileLoader.getBatches());
+
+        Map<String, Object> bulkheads = new LinkedHashMap<>();
+        for (Bulkhead bulkhead : firebaseService.getBulkheads()) {
+            Map<String, Object> counters = new LinkedHashMap<>();
+            counters.put("inFlight", bulkhead.getInFlight());
+            counters.put("queued", bulkhead.getQueued());
+            counters.put("rejected", bulkhead.getRejected());
+            counters.put("timedOut", bulkhead.getTimedOut());
+            counters.put("stalled", bulkhead.getStalled());
+            bulkheads.put(bulkhead.getName(), counters);
+        }
+        metrics.put("bulkheads", bulkheads);
+        metrics.put("responses503", storeExceptionHandler.getServiceUnavailable());
+        metrics.put("responses504", storeExceptionHandler.getGatewayTimeouts());
+        metrics.put("sendsDeduplicated", messageRouter.getDuplicates());
+        return metrics;
+    }
+
+    /**
+     * Counters of the STOMP broadcast scheduler: events published, frames actually sent and their ratio
+     */
+    @GetMapping("/broadcast")
+    public Map<String, Object> getBroadcastMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", broadcastScheduler.getQueueDepth());
+        metrics.put("eventsPublished", broadcastScheduler.getEventsPublished());
+        metrics.put("framesSent", broadcastScheduler.getFramesSent());
+        metrics.put("coalescingRatio", broadcastScheduler.getCoalescingRatio());
+        return metrics;
+    }
+
+    /**
+     * Presence registry: live sessions, online users, status transitions and batched writes
+     */
+    @GetMapping("/presence")
+    public Map<String, Object> getPresenceMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", presenceService.getSessionCount());
+        metrics.put("onlineUsers", presenceService.getOnlineUsers());
+        metrics.put("transitions", presenceService.getTransitions());
+        metrics.put("flushes", presenceService.getFlushes());
+        return metrics;
+    }
+
+    /**
+     * WebSocket sessions: open sessions, sessions closed for being too slow, and the send buffers of the
+     * slowest ones
+     */
+    @GetMapping("/sessions")
+    public Map<String, Object> getSessionMetrics(@RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", slowConsumerGuard.getSessionCount());
+        metrics.put("terminated", slowConsumerGuard.getTerminated());
+        metrics.put("slowest", slowConsumerGuard.getSlowestSessions(Math.max(0, limit)));
+        return metrics;
+    }
+
+    /**
+     * Server-Sent Event streams: followed streams, open connections, events sent and connections
+     * closed for falling behind
+     */
+    @GetMapping("/streams")
+    public Map<String, Object> getStreamMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("streams", eventStreamHub.getStreamCount());
+        metrics.put("connections", eventStreamHub.getConnectionCount());
+        metrics.put("eventsPublished", eventStreamHub.getEventsPublished());
+        metrics.put("overflows", eventStreamHub.getOverflows());
+        return metrics;
+    }
+
+    /**
+     * Message search index: indexed messages, distinct words, queries served and compactions
+     */
+    @GetMapping("/search")
+    public Map<String, Object> getSearchMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("documents", messageSearchIndex.getDocumentCount());
+        metrics.put("terms", messageSearchIndex.getTermCount());
+        metrics.put("queries", messageSearchIndex.getQueries());
+        metrics.put("compactions", messageSearchIndex.getCompactions());
+        return metrics;
+    }
+}
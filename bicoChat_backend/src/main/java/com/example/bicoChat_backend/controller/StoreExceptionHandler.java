@@ -0,0 +1,57 @@
+package com.example.bicoChat_backend.controller;
+
+import com.example.bicoChat_backend.service.StoreTimeoutException;
+import com.example.bicoChat_backend.service.StoreUnavailableException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns store rejections into 503 (with Retry-After) and store timeouts into 504, also when they
+ * reach the controller wrapped by get()/join(). Any other failure keeps the default handling.
+ */
+@RestControllerAdvice
+public class StoreExceptionHandler {
+
+    private final AtomicLong serviceUnavailable = new AtomicLong();
+    private final AtomicLong gatewayTimeouts = new AtomicLong();
+
+    @ExceptionHandler({StoreUnavailableException.class, ExecutionException.class, CompletionException.class})
+    public ResponseEntity<Map<String, Object>> handleStoreFailure(Exception ex) throws Exception {
+        Throwable cause = ex;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (!(cause instanceof StoreUnavailableException unavailable)) {
+            throw ex;
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", unavailable.getMessage());
+        body.put("bulkhead", unavailable.getBulkhead());
+        if (unavailable instanceof StoreTimeoutException) {
+            gatewayTimeouts.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(body);
+        }
+        serviceUnavailable.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
+
+    public long getServiceUnavailable() {
+        return serviceUnavailable.get();
+    }
+
+    public long getGatewayTimeouts() {
+        return gatewayTimeouts.get();
+    }
+}
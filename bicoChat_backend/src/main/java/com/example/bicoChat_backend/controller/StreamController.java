@@ -0,0 +1,99 @@
+package com.example.bicoChat_backend.controller;
+
+import com.example.bicoChat_backend.config.RestAuthInterceptor;
+import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.EventStreamHub;
+import com.example.bicoChat_backend.service.ListenerOwnership;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Server-Sent Events for clients without a STOMP session: one long-lived response per chat or inbox,
+ * carrying the same events as /topic/messages/{chatId} and /user/queue/inbox.
+ * Resume with the Last-Event-ID header (sent by EventSource on reconnect) or the lastEventId parameter.
+ * The caller is authenticated by {@link RestAuthInterceptor} (EventSource passes the ID token as
+ * access_token) and only gets its own inbox and the chats it takes part in; others get 403.
+ *
+ * Events of a chat or an inbox are published only by the instance that owns it (see
+ * {@link ListenerOwnership}), so the other instances answer 307 to the same stream on the owner, query
+ * and resume position included. EventSource follows the redirect, and a reconnection that lands on
+ * another instance is redirected again, so the Last-Event-ID ids always come from the owner's stream.
+ */
+@RestController
+@RequestMapping("/api/stream")
+public class StreamController {
+
+    @Autowired
+    private EventStreamHub eventStreamHub;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ListenerOwnership listenerOwnership;
+
+    @GetMapping(value = "/chats/{chatId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public CompletableFuture<ResponseEntity<SseEmitter>> streamChat(
+            @PathVariable String chatId,
+            @RequestAttribute(RestAuthInterceptor.UID) String uid,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId,
+            HttpServletRequest request) {
+        String ownerUrl = listenerOwnership.ownerUrl(chatId);
+        if (ownerUrl != null) {
+            return CompletableFuture.completedFuture(redirectToOwner(ownerUrl, request, lastEventIdHeader));
+        }
+        return chatService.getParticipants(chatId).thenApply(participants -> {
+            if (!participants.contains(uid)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).<SseEmitter>build();
+            }
+            return ResponseEntity.ok(eventStreamHub.subscribe(EventStreamHub.chatStream(chatId),
+                    lastEventIdHeader != null ? lastEventIdHeader : lastEventId));
+        });
+    }
+
+    @GetMapping(value = "/inbox/{uid}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamInbox(
+            @PathVariable String uid,
+            @RequestAttribute(RestAuthInterceptor.UID) String caller,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId,
+            HttpServletRequest request) {
+        if (!uid.equals(caller)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String ownerUrl = listenerOwnership.ownerUrl(uid);
+        if (ownerUrl != null) {
+            return redirectToOwner(ownerUrl, request, lastEventIdHeader);
+        }
+        return ResponseEntity.ok(eventStreamHub.subscribe(EventStreamHub.inboxStream(uid),
+                lastEventIdHeader != null ? lastEventIdHeader : lastEventId));
+    }
+
+    /**
+     * The same request on the owner. The Last-Event-ID header becomes the lastEventId parameter, which
+     * the redirected request carries for sure.
+     */
+    private static ResponseEntity<SseEmitter> redirectToOwner(String ownerUrl, HttpServletRequest request,
+                                                              String lastEventIdHeader) {
+        String query = request.getQueryString();
+        UriComponentsBuilder location = UriComponentsBuilder.fromUriString(
+                ownerUrl + request.getRequestURI() + (query != null ? "?" + query : ""));
+        if (lastEventIdHeader != null) {
+            location.replaceQueryParam("lastEventId", UriUtils.encodeQueryParam(lastEventIdHeader, StandardCharsets.UTF_8));
+        }
+        return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                .location(location.build(true).toUri())
+                .build();
+    }
+}
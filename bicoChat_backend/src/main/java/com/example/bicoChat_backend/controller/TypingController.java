@@ -0,0 +1,51 @@
+package com.example.bicoChat_backend.controller;
+
+import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.TypingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * STOMP endpoint for typing indicators: clients send {"typing": true|false} to /app/chat/{chatId}/typing
+ * and subscribe to /topic/typing/{chatId}. Only participants of the chat are relayed; the participants
+ * come from the path cache, which keeps them fresh with a listener, so typing traffic does not reach
+ * the store once a chat has been read.
+ */
+@Controller
+public class TypingController {
+
+    private static final Logger log = LoggerFactory.getLogger(TypingController.class);
+
+    @Autowired
+    private TypingService typingService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @MessageMapping("/chat/{chatId}/typing")
+    public void typing(@DestinationVariable String chatId, @Payload Map<String, Object> payload, Principal principal) {
+        if (principal == null) {
+            return;
+        }
+        String uid = principal.getName();
+        boolean isTyping = !Boolean.FALSE.equals(payload.get("typing"));
+        chatService.getParticipants(chatId)
+                .thenAccept(participants -> {
+                    if (participants.contains(uid)) {
+                        typingService.onTyping(chatId, uid, isTyping);
+                    }
+                })
+                .exceptionally(error -> {
+                    log.debug("Typing event for chat {} dropped: {}", chatId, error.getMessage());
+                    return null;
+                });
+    }
+}
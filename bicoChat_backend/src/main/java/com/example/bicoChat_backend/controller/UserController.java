@@ -1,15 +1,19 @@
 package com.example.bicoChat_backend.controller;
 
+import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.ChatStore;
 import com.example.bicoChat_backend.service.FirebaseService;
+import com.example.bicoChat_backend.service.InboxPublisher;
+import com.example.bicoChat_backend.service.ListenerOwnership;
+import com.example.bicoChat_backend.service.PresenceService;
+import com.example.bicoChat_backend.service.ProfileLoader;
 import com.example.bicoChat_backend.service.UserService;
-import com.google.firebase.database.*;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.PostConstruct;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/users")
@@ -22,54 +26,78 @@ public class UserController {
     private FirebaseService firebaseService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private InboxPublisher inboxPublisher;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private ListenerOwnership listenerOwnership;
+
+    @Autowired
+    private ProfileLoader profileLoader;
+
+    @Autowired
+    private ChatService chatService;
 
     @PostConstruct
     public void initFirebaseUserListener() {
-        firebaseService.listenToUsersChanges(new ValueEventListener() {
+        // each user receives only their own changes on /user/queue/inbox
+        firebaseService.addChildListener("users", new ChatStore.ChildListener() {
+            @Override
+            public void onChildAdded(String uid, Object user) {
+                profileLoader.userChanged(uid, user);
+                if (listenerOwnership.owns(uid)) {
+                    inboxPublisher.userAdded(uid, user);
+                }
+            }
+
+            @Override
+            public void onChildChanged(String uid, Object user) {
+                profileLoader.userChanged(uid, user);
+                if (listenerOwnership.owns(uid)) {
+                    inboxPublisher.userChanged(uid, user);
+                }
+            }
+
             @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                userService.getAllUsers().thenAccept(users -> {
-                    messagingTemplate.convertAndSend("/topic/users", users);
-                });
+            public void onChildRemoved(String uid, Object user) {
+                profileLoader.userRemoved(uid);
+                if (listenerOwnership.owns(uid)) {
+                    inboxPublisher.userRemoved(uid);
+                }
             }
 
             @Override
-            public void onCancelled(DatabaseError error) {
+            public void onCancelled(Exception error) {
                 System.err.println("Error on /users: " + error.getMessage());
             }
         });
     }
 
     @GetMapping
-    public Object getAllUsers() throws ExecutionException, InterruptedException {
-        return userService.getAllUsers().get();
+    public CompletableFuture<?> getAllUsers() {
+        return userService.getAllUsers();
     }
 
     @GetMapping("/{uid}")
-    public Object getUserById(@PathVariable String uid) throws ExecutionException, InterruptedException {
-        return userService.getUserById(uid).get();
+    public CompletableFuture<?> getUserById(@PathVariable String uid) {
+        return userService.getUserById(uid);
     }
 
     @PutMapping("/{uid}/status")
     public void updateUserStatus(@PathVariable String uid, @RequestBody Map<String, String> body) {
         String status = body.get("status");
-        userService.updateUserStatus(uid, status);
+        // scritto su Firebase con il prossimo flush della presenza, insieme agli altri cambi di stato
+        presenceService.setStatus(uid, status);
     }
 
     @PutMapping("/markChatAsRead/{chatId}")
-    public void markChatAsRead(@PathVariable String chatId) {
-        userService.markChatAsRead(chatId)
-                .thenAccept(aVoid -> {
-                    // Dopo aver aggiornato Firebase, invia l'intera lista aggiornata a tutti i client
-                    userService.getAllUsers().thenAccept(users -> {
-                        messagingTemplate.convertAndSend("/topic/users", users);  // Notifica a tutti i client
-                    });
-                })
-                .exceptionally(ex -> {
-                    System.err.println("Errore nel marcare la chat come letta per la chat " + chatId);
-                    return null;
-                });
+    public CompletableFuture<Void> markChatAsRead(@PathVariable String chatId, @RequestParam(required = false) String uid) {
+        // con uid si sposta solo il watermark di chi legge, senza (client esistenti) quello di tutti i partecipanti;
+        // ogni partecipante riceve l'anteprima aggiornata su /user/queue/inbox dal listener su users
+        // gli errori dello store arrivano al client (503/504, vedi StoreExceptionHandler)
+        return uid != null ? chatService.markChatAsRead(chatId, uid) : chatService.markChatAsReadByAll(chatId);
     }
 
 }
@@ -0,0 +1,93 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Delta published on /topic/chats when one chat summary is added, changed or removed.
+ * Versions grow by one per event within an epoch: a client that sees a gap, or a new epoch (the
+ * publishing instance restarted or changed), reloads GET /api/chats/snapshot.
+ */
+public class ChatEvent {
+    public static final String ADDED = "added";
+    public static final String CHANGED = "changed";
+    public static final String REMOVED = "removed";
+
+    @JsonProperty("type")
+    private String type;
+
+    // start time of the versioning, epoch millis
+    @JsonProperty("epoch")
+    private long epoch;
+
+    @JsonProperty("version")
+    private long version;
+
+    @JsonProperty("chatId")
+    private String chatId;
+
+    // null for removed chats
+    @JsonProperty("chat")
+    private ChatSummary chat;
+
+    public ChatEvent() {
+    }
+
+    public ChatEvent(String type, long epoch, long version, String chatId, ChatSummary chat) {
+        this.type = type;
+        this.epoch = epoch;
+        this.version = version;
+        this.chatId = chatId;
+        this.chat = chat;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public ChatSummary getChat() {
+        return chat;
+    }
+
+    public void setChat(ChatSummary chat) {
+        this.chat = chat;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatEvent{" +
+                "type='" + type + '\'' +
+                ", epoch=" + epoch +
+                ", version=" + version +
+                ", chatId='" + chatId + '\'' +
+                ", chat=" + chat +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Every chat summary as of a version of the /topic/chats stream: apply the events of the same epoch
+ * with a greater version
+ */
+public class ChatListSnapshot {
+    @JsonProperty("epoch")
+    private long epoch;
+
+    @JsonProperty("version")
+    private long version;
+
+    @JsonProperty("chats")
+    private List<ChatSummary> chats;
+
+    public ChatListSnapshot() {
+    }
+
+    public ChatListSnapshot(long epoch, long version, List<ChatSummary> chats) {
+        this.epoch = epoch;
+        this.version = version;
+        this.chats = chats;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<ChatSummary> getChats() {
+        return chats;
+    }
+
+    public void setChats(List<ChatSummary> chats) {
+        this.chats = chats;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatListSnapshot{" +
+                "epoch=" + epoch +
+                ", version=" + version +
+                ", chats=" + chats +
+                '}';
+    }
+}
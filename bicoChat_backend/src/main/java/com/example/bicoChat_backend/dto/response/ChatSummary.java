@@ -0,0 +1,254 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.example.bicoChat_backend.model.Chat;
+import com.example.bicoChat_backend.model.Message;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projection of a chat without its messages, stored under chatMeta/{chatId} and kept up to date on
+ * every send, so chat listings cost the same whatever the size of the histories
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChatSummary {
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("name")
+    private String name;
+
+    @JsonProperty("type")
+    private String type;
+
+    @JsonProperty("participants")
+    private List<String> participants;
+
+    @JsonProperty("lastMessage")
+    private String lastMessage;
+
+    @JsonProperty("lastSender")
+    private String lastSender;
+
+    @JsonProperty("lastMessageId")
+    private String lastMessageId;
+
+    @JsonProperty("messageCount")
+    private long messageCount;
+
+    // sequence number of the last message
+    @JsonProperty("lastSeq")
+    private long lastSeq;
+
+    // seq of the last message written (written with lastSeq; older chats may only have one of the two)
+    @JsonProperty("lastMessageSeq")
+    private long lastMessageSeq;
+
+    // read watermark of each participant: seq and time of the last message they read
+    @JsonProperty("readUpTo")
+    private Map<String, ReadWatermark> readUpTo;
+
+    // epoch millis of the last message, or of the creation for a chat without messages
+    @JsonProperty("lastActivity")
+    private long lastActivity;
+
+    public ChatSummary() {
+        this.participants = new ArrayList<>();
+        this.readUpTo = new HashMap<>();
+    }
+
+    public ChatSummary(String id, Chat chat, long createdAt) {
+        this.id = id;
+        this.name = chat.getName();
+        this.type = chat.getType();
+        this.participants = chat.getParticipants() != null ? chat.getParticipants() : new ArrayList<>();
+        this.lastActivity = createdAt;
+        this.readUpTo = new HashMap<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<String> getParticipants() {
+        return participants;
+    }
+
+    public void setParticipants(List<String> participants) {
+        this.participants = participants;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public String getLastSender() {
+        return lastSender;
+    }
+
+    public void setLastSender(String lastSender) {
+        this.lastSender = lastSender;
+    }
+
+    public String getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(String lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public long getLastMessageSeq() {
+        return lastMessageSeq;
+    }
+
+    public void setLastMessageSeq(long lastMessageSeq) {
+        this.lastMessageSeq = lastMessageSeq;
+    }
+
+    public Map<String, ReadWatermark> getReadUpTo() {
+        return readUpTo;
+    }
+
+    public void setReadUpTo(Map<String, ReadWatermark> readUpTo) {
+        this.readUpTo = readUpTo != null ? readUpTo : new HashMap<>();
+    }
+
+    /**
+     * True if every participant other than the sender has read up to this message
+     */
+    public boolean isReadByOthers(Message message) {
+        boolean othersExist = false;
+        for (String participant : participants) {
+            if (participant == null || participant.equals(message.getSender())) {
+                continue;
+            }
+            othersExist = true;
+            ReadWatermark watermark = readUpTo.get(participant);
+            if (watermark == null || !watermark.covers(message)) {
+                return false;
+            }
+        }
+        return othersExist;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatSummary{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", type='" + type + '\'' +
+                ", participants=" + participants +
+                ", lastMessage='" + lastMessage + '\'' +
+                ", lastSender='" + lastSender + '\'' +
+                ", lastMessageId='" + lastMessageId + '\'' +
+                ", messageCount=" + messageCount +
+                ", lastSeq=" + lastSeq +
+                ", lastMessageSeq=" + lastMessageSeq +
+                ", readUpTo=" + readUpTo +
+                ", lastActivity=" + lastActivity +
+                '}';
+    }
+
+    /**
+     * Last message read by a participant. Message keys cannot be compared (chats not migrated yet
+     * still have UUID keys), so a message is covered by its seq when both sides have one, by its
+     * timestamp otherwise.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ReadWatermark {
+        @JsonProperty("seq")
+        private long seq;
+
+        @JsonProperty("timestamp")
+        private long timestamp;
+
+        public ReadWatermark() {
+        }
+
+        public ReadWatermark(long seq, long timestamp) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+        }
+
+        public boolean covers(Message message) {
+            if (seq > 0 && message.getSeq() > 0) {
+                return message.getSeq() <= seq;
+            }
+            return message.getTimestamp() <= timestamp;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(long seq) {
+            this.seq = seq;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return "ReadWatermark{seq=" + seq + ", timestamp=" + timestamp + '}';
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bicoChat_backend.dto.response;
 
 import com.example.bicoChat_backend.model.User;
+import com.example.bicoChat_backend.model.UserProfile;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,4 +23,12 @@ public class FriendResponseDTO {
         this.avatar = user.getAvatar();
         this.friendshipStatus = status;
     }
+
+    public FriendResponseDTO(String id, UserProfile profile, String status) {
+        this.id = id;
+        this.username = profile.getUsername();
+        this.email = profile.getEmail();
+        this.avatar = profile.getAvatar();
+        this.friendshipStatus = status;
+    }
 }
@@ -0,0 +1,108 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.example.bicoChat_backend.model.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Update pushed to a single user on /user/queue/inbox: one of their chat previews changed or was
+ * removed, or a friend changed presence status
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InboxEvent {
+    public static final String CHAT = "chat";
+    public static final String CHAT_REMOVED = "chatRemoved";
+    public static final String PRESENCE = "presence";
+
+    @JsonProperty("type")
+    private String type;
+
+    @JsonProperty("chatId")
+    private String chatId;
+
+    @JsonProperty("chat")
+    private User.ChatInfo chat;
+
+    @JsonProperty("userId")
+    private String userId;
+
+    @JsonProperty("status")
+    private String status;
+
+    public InboxEvent() {
+    }
+
+    public static InboxEvent chat(String chatId, User.ChatInfo chat) {
+        InboxEvent event = new InboxEvent();
+        event.type = CHAT;
+        event.chatId = chatId;
+        event.chat = chat;
+        return event;
+    }
+
+    public static InboxEvent chatRemoved(String chatId) {
+        InboxEvent event = new InboxEvent();
+        event.type = CHAT_REMOVED;
+        event.chatId = chatId;
+        return event;
+    }
+
+    public static InboxEvent presence(String userId, String status) {
+        InboxEvent event = new InboxEvent();
+        event.type = PRESENCE;
+        event.userId = userId;
+        event.status = status;
+        return event;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public User.ChatInfo getChat() {
+        return chat;
+    }
+
+    public void setChat(User.ChatInfo chat) {
+        this.chat = chat;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "InboxEvent{" +
+                "type='" + type + '\'' +
+                ", chatId='" + chatId + '\'' +
+                ", chat=" + chat +
+                ", userId='" + userId + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.example.bicoChat_backend.model.Message;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Delta published on /topic/messages/{chatId} for one message.
+ * Sequence numbers grow by one per event of the chat within an epoch: a client that sees a gap
+ * reloads the latest page of the history (GET /api/messages/{chatId}/page). The numbering starts
+ * again from 1 with a new epoch (server restart, chat moved to another instance): the client takes
+ * the new epoch and its seq as they are and reloads the page as well, since events may be missing.
+ */
+public class MessageEvent {
+    public static final String ADDED = "added";
+    public static final String EDITED = "edited";
+    public static final String DELETED = "deleted";
+
+    @JsonProperty("type")
+    private String type;
+
+    // start time of the numbering, epoch millis
+    @JsonProperty("epoch")
+    private long epoch;
+
+    @JsonProperty("seq")
+    private long seq;
+
+    @JsonProperty("chatId")
+    private String chatId;
+
+    @JsonProperty("messageId")
+    private String messageId;
+
+    // null for deleted messages
+    @JsonProperty("message")
+    private Message message;
+
+    public MessageEvent() {
+    }
+
+    public MessageEvent(String type, long epoch, long seq, String chatId, String messageId, Message message) {
+        this.type = type;
+        this.epoch = epoch;
+        this.seq = seq;
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.message = message;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageEvent{" +
+                "type='" + type + '\'' +
+                ", epoch=" + epoch +
+                ", seq=" + seq +
+                ", chatId='" + chatId + '\'' +
+                ", messageId='" + messageId + '\'' +
+                ", message=" + message +
+                '}';
+    }
+}
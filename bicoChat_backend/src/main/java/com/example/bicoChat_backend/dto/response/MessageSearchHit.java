@@ -0,0 +1,113 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One message found by GET /api/messages/search
+ */
+public class MessageSearchHit {
+    @JsonProperty("chatId")
+    private String chatId;
+
+    @JsonProperty("messageId")
+    private String messageId;
+
+    @JsonProperty("sender")
+    private String sender;
+
+    @JsonProperty("content")
+    private String content;
+
+    @JsonProperty("timestamp")
+    private long timestamp;
+
+    @JsonProperty("seq")
+    private long seq;
+
+    // relevance, higher is better: only meaningful within the same search
+    @JsonProperty("score")
+    private double score;
+
+    public MessageSearchHit() {
+    }
+
+    public MessageSearchHit(String chatId, String messageId, String sender, String content, long timestamp, long seq,
+                            double score) {
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.sender = sender;
+        this.content = content;
+        this.timestamp = timestamp;
+        this.seq = seq;
+        this.score = score;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageSearchHit{" +
+                "chatId='" + chatId + '\'' +
+                ", messageId='" + messageId + '\'' +
+                ", sender='" + sender + '\'' +
+                ", content='" + content + '\'' +
+                ", timestamp=" + timestamp +
+                ", seq=" + seq +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One page of search results, best match first
+ */
+public class MessageSearchResponse {
+    @JsonProperty("query")
+    private String query;
+
+    // messages matching the query in the chats of the user, over all pages
+    @JsonProperty("total")
+    private int total;
+
+    @JsonProperty("page")
+    private int page;
+
+    @JsonProperty("size")
+    private int size;
+
+    @JsonProperty("hits")
+    private List<MessageSearchHit> hits;
+
+    public MessageSearchResponse() {
+    }
+
+    public MessageSearchResponse(String query, int total, int page, int size, List<MessageSearchHit> hits) {
+        this.query = query;
+        this.total = total;
+        this.page = page;
+        this.size = size;
+        this.hits = hits;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public List<MessageSearchHit> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<MessageSearchHit> hits) {
+        this.hits = hits;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageSearchResponse{" +
+                "query='" + query + '\'' +
+                ", total=" + total +
+                ", page=" + page +
+                ", size=" + size +
+                ", hits=" + hits +
+                '}';
+    }
+}
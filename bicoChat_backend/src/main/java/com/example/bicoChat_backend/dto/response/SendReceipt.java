@@ -0,0 +1,98 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Reply on /user/queue/receipts to a message sent over STOMP, once it is stored (or failed).
+ * clientRef is echoed back so the client can match the receipt with its pending message.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SendReceipt {
+    public static final String SENT = "sent";
+    public static final String FAILED = "failed";
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("clientRef")
+    private String clientRef;
+
+    @JsonProperty("chatId")
+    private String chatId;
+
+    @JsonProperty("messageId")
+    private String messageId;
+
+    @JsonProperty("seq")
+    private Long seq;
+
+    @JsonProperty("timestamp")
+    private Long timestamp;
+
+    @JsonProperty("error")
+    private String error;
+
+    public SendReceipt() {
+    }
+
+    public static SendReceipt sent(String clientRef, String chatId, String messageId, long seq, long timestamp) {
+        SendReceipt receipt = new SendReceipt();
+        receipt.status = SENT;
+        receipt.clientRef = clientRef;
+        receipt.chatId = chatId;
+        receipt.messageId = messageId;
+        receipt.seq = seq;
+        receipt.timestamp = timestamp;
+        return receipt;
+    }
+
+    public static SendReceipt failed(String clientRef, String chatId, String error) {
+        SendReceipt receipt = new SendReceipt();
+        receipt.status = FAILED;
+        receipt.clientRef = clientRef;
+        receipt.chatId = chatId;
+        receipt.error = error;
+        return receipt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getClientRef() {
+        return clientRef;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "SendReceipt{" +
+                "status='" + status + '\'' +
+                ", clientRef='" + clientRef + '\'' +
+                ", chatId='" + chatId + '\'' +
+                ", messageId='" + messageId + '\'' +
+                ", seq=" + seq +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
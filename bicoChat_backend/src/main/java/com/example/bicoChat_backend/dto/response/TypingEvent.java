@@ -0,0 +1,60 @@
+package com.example.bicoChat_backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Typing indicator relayed on /topic/typing/{chatId}. A "true" event is repeated at most once per
+ * throttle window while the user keeps typing, "false" is sent when they stop or the indicator expires.
+ */
+public class TypingEvent {
+    @JsonProperty("chatId")
+    private String chatId;
+
+    @JsonProperty("userId")
+    private String userId;
+
+    @JsonProperty("typing")
+    private boolean typing;
+
+    public TypingEvent() {
+    }
+
+    public TypingEvent(String chatId, String userId, boolean typing) {
+        this.chatId = chatId;
+        this.userId = userId;
+        this.typing = typing;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public boolean isTyping() {
+        return typing;
+    }
+
+    public void setTyping(boolean typing) {
+        this.typing = typing;
+    }
+
+    @Override
+    public String toString() {
+        return "TypingEvent{" +
+                "chatId='" + chatId + '\'' +
+                ", userId='" + userId + '\'' +
+                ", typing=" + typing +
+                '}';
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bicoChat_backend.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads a timestamp as epoch milliseconds.
+ * Besides numbers it accepts the ISO strings written by older versions
+ * ("2025-04-12T10:15:30.123" without zone, read in the server zone, or with an offset/Z).
+ */
+public class EpochMillisDeserializer extends StdDeserializer<Long> {
+
+    public EpochMillisDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getValueAsLong();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return parse(parser.getText());
+        }
+        return 0L;
+    }
+
+    @Override
+    public Long getNullValue(DeserializationContext context) {
+        return 0L;
+    }
+
+    /**
+     * Epoch milliseconds of a legacy string timestamp, 0 if it cannot be read
+     */
+    public static long parse(String text) {
+        if (text == null || text.isBlank()) {
+            return 0L;
+        }
+        String value = text.trim();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ignored) {
+            // not a number, try the ISO formats below
+        }
+        try {
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+            // has a zone
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+            // last chance: an instant
+        }
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            System.err.println("Unreadable timestamp: " + text);
+            return 0L;
+        }
+    }
+}
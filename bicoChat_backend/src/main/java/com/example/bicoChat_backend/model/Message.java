@@ -2,6 +2,7 @@ package com.example.bicoChat_backend.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Message {
@@ -12,18 +13,24 @@ public class Message {
     @JsonProperty("sender")
     private String sender;
 
+    // epoch milliseconds (older data stored ISO strings, still accepted when reading)
     @JsonProperty("timestamp")
-    private String timestamp;
+    @JsonDeserialize(using = EpochMillisDeserializer.class)
+    private long timestamp;
 
     @JsonProperty("read")
     private boolean read;
 
+    // position of the message in its chat, starting from 1 (0 for messages sent before it existed)
+    @JsonProperty("seq")
+    private long seq;
+
     // ✅ ID aggiunto per supportare modifica/eliminazione
     private String id;
 
     public Message() {}
 
-    public Message(String content, String sender, String timestamp, boolean read) {
+    public Message(String content, String sender, long timestamp, boolean read) {
         this.content = content;
         this.sender = sender;
         this.timestamp = timestamp;
@@ -47,11 +54,11 @@ public class Message {
         this.sender = sender;
     }
 
-    public String getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
 
-    public void setTimestamp(String timestamp) {
+    public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
 
@@ -63,6 +70,14 @@ public class Message {
         this.read = read;
     }
 
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
     public String getId() {
         return id;
     }
@@ -77,7 +92,7 @@ public class Message {
                 "id='" + id + '\'' +
                 ", content='" + content + '\'' +
                 ", sender='" + sender + '\'' +
-                ", timestamp='" + timestamp + '\'' +
+                ", timestamp=" + timestamp +
                 ", read=" + read +
                 '}';
     }
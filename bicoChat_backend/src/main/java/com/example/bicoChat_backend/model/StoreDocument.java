@@ -0,0 +1,48 @@
+package com.example.bicoChat_backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * One persisted subtree of the embedded store, e.g. "users/{uid}" or "chats/{chatId}",
+ * serialized as JSON.
+ */
+@Entity
+@Table(name = "store_document")
+public class StoreDocument {
+
+    @Id
+    @Column(name = "path", length = 512)
+    private String path;
+
+    @Lob
+    @Column(name = "json", nullable = false)
+    private String json;
+
+    public StoreDocument() {
+    }
+
+    public StoreDocument(String path, String json) {
+        this.path = path;
+        this.json = json;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public void setJson(String json) {
+        this.json = json;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.bicoChat_backend.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import java.util.Map;
 import java.util.Objects;
 
@@ -31,15 +32,29 @@ public class User {
         @JsonProperty("name")
         private String name;
 
+        // epoch milliseconds of the last message
         @JsonProperty("timestamp")
-        private String timestamp;
+        @JsonDeserialize(using = EpochMillisDeserializer.class)
+        private long timestamp;
 
+        // counter stored by older versions, used only for entries without lastMessageSeq
         @JsonProperty("unreadCount")
         private int unreadCount;
 
         @JsonProperty("lastUser")
         private String lastUser;
 
+        // read watermark: last message read by the user in this chat (see ChatService.markChatAsRead)
+        @JsonProperty("lastReadMessageId")
+        private String lastReadMessageId;
+
+        @JsonProperty("lastReadSeq")
+        private long lastReadSeq;
+
+        // seq of the last message of the chat, written with every message
+        @JsonProperty("lastMessageSeq")
+        private long lastMessageSeq;
+
         // Empty constructor
         public ChatInfo() {
         }
@@ -61,7 +76,7 @@ public class User {
             this.name = name;
         }
 
-        public String getTimestamp() {
+        public long getTimestamp() {
             return timestamp;
         }
 
@@ -73,12 +88,21 @@ public class User {
             this.lastUser = lastUser;
         }
 
-        public void setTimestamp(String timestamp) {
+        public void setTimestamp(long timestamp) {
             this.timestamp = timestamp;
         }
 
+        /**
+         * Messages after the read watermark: lastMessageSeq - lastReadSeq. Nothing counts them one by
+         * one, so a concurrent send and mark-as-read cannot leave the count wrong. Deleted messages
+         * above the watermark still count until the chat is read.
+         */
+        @JsonProperty("unreadCount")
         public int getUnreadCount() {
-            return unreadCount;
+            if (lastMessageSeq == 0) {
+                return unreadCount;
+            }
+            return (int) Math.max(0, lastMessageSeq - lastReadSeq);
         }
 
 
@@ -86,7 +110,31 @@ public class User {
             this.unreadCount = unreadCount;
         }
 
-        public ChatInfo(String lastMessage, String name, String timestamp, int unreadCount, String lastUser) {
+        public String getLastReadMessageId() {
+            return lastReadMessageId;
+        }
+
+        public void setLastReadMessageId(String lastReadMessageId) {
+            this.lastReadMessageId = lastReadMessageId;
+        }
+
+        public long getLastReadSeq() {
+            return lastReadSeq;
+        }
+
+        public void setLastReadSeq(long lastReadSeq) {
+            this.lastReadSeq = lastReadSeq;
+        }
+
+        public long getLastMessageSeq() {
+            return lastMessageSeq;
+        }
+
+        public void setLastMessageSeq(long lastMessageSeq) {
+            this.lastMessageSeq = lastMessageSeq;
+        }
+
+        public ChatInfo(String lastMessage, String name, long timestamp, int unreadCount, String lastUser) {
             this.lastMessage = lastMessage;
             this.name = name;
             this.timestamp = timestamp;
@@ -99,7 +147,7 @@ public class User {
             return "ChatInfo{" +
                     "lastMessage='" + lastMessage + '\'' +
                     ", name='" + name + '\'' +
-                    ", timestamp='" + timestamp + '\'' +
+                    ", timestamp=" + timestamp +
                     ", unreadCount=" + unreadCount +
                     ", lastUser='" + lastUser + '\'' +
                     '}';
@@ -112,9 +160,9 @@ public class User {
             if (o == null || getClass() != o.getClass()) return false;
             ChatInfo chatInfo = (ChatInfo) o;
             return unreadCount == chatInfo.unreadCount &&
+                    timestamp == chatInfo.timestamp &&
                     Objects.equals(lastMessage, chatInfo.lastMessage) &&
-                    Objects.equals(name, chatInfo.name) &&
-                    Objects.equals(timestamp, chatInfo.timestamp);
+                    Objects.equals(name, chatInfo.name);
         }
 
         @Override
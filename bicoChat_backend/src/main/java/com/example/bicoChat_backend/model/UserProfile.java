@@ -0,0 +1,61 @@
+package com.example.bicoChat_backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The public fields of a user (what friend lists show), without status, chats and friends
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserProfile {
+
+    @JsonProperty("username")
+    private String username;
+
+    @JsonProperty("email")
+    private String email;
+
+    @JsonProperty("avatar")
+    private String avatar;
+
+    public UserProfile() {}
+
+    public UserProfile(String username, String email, String avatar) {
+        this.username = username;
+        this.email = email;
+        this.avatar = avatar;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getAvatar() {
+        return avatar;
+    }
+
+    public void setAvatar(String avatar) {
+        this.avatar = avatar;
+    }
+
+    @Override
+    public String toString() {
+        return "UserProfile{" +
+                "username='" + username + '\'' +
+                ", email='" + email + '\'' +
+                ", avatar='" + avatar + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bicoChat_backend.repository;
+
+import com.example.bicoChat_backend.model.StoreDocument;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoreDocumentRepository extends JpaRepository<StoreDocument, String> {
+}
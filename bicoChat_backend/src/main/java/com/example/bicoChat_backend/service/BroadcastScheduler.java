@@ -0,0 +1,148 @@
+package com.example.bicoChat_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces STOMP broadcasts per destination: the events published to a destination during a short
+ * window leave as one frame, so a burst of store events costs a bounded number of outbound frames.
+ *
+ * {@link #publish} frames are JSON arrays of events, in publication order. {@link #publishLatest} is for
+ * destinations carrying a full state: only the last payload of the window is built and sent.
+ * Frames are sent from a single thread, so a destination never sees them out of order.
+ */
+@Component
+public class BroadcastScheduler {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long windowMillis;
+    private final int maxBatch;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stomp-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private final Map<String, Pending> pending = new HashMap<>();
+    private long queued;
+
+    private final AtomicLong eventsPublished = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+
+    @Autowired
+    public BroadcastScheduler(SimpMessagingTemplate messagingTemplate,
+                              @Value("${bicochat.broadcast.window-ms:30}") long windowMillis,
+                              @Value("${bicochat.broadcast.max-batch:100}") int maxBatch) {
+        this.messagingTemplate = messagingTemplate;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Queue an event for destination; it leaves in the next frame (a list) of that destination
+     */
+    public void publish(String destination, Object event) {
+        enqueue(destination, false, event);
+    }
+
+    /**
+     * Replace whatever is pending for destination with this payload, built only when the frame is sent
+     */
+    public void publishLatest(String destination, Supplier<?> payload) {
+        enqueue(destination, true, payload);
+    }
+
+    public long getQueueDepth() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    public long getEventsPublished() {
+        return eventsPublished.get();
+    }
+
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    /**
+     * Events published per frame sent, 1 when nothing is coalesced
+     */
+    public double getCoalescingRatio() {
+        long frames = framesSent.get();
+        return frames == 0 ? 1 : (double) eventsPublished.get() / frames;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private void enqueue(String destination, boolean latestOnly, Object item) {
+        eventsPublished.incrementAndGet();
+        boolean flushNow;
+        boolean schedule;
+        synchronized (lock) {
+            Pending batch = pending.computeIfAbsent(destination, d -> new Pending(latestOnly));
+            if (latestOnly) {
+                queued -= batch.items.size();
+                batch.items.clear();
+            }
+            batch.items.add(item);
+            queued++;
+
+            flushNow = windowMillis <= 0 || batch.items.size() >= maxBatch;
+            schedule = !batch.scheduled;
+            batch.scheduled = true;
+        }
+        if (flushNow) {
+            scheduler.execute(() -> flush(destination));
+        } else if (schedule) {
+            scheduler.schedule(() -> flush(destination), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(String destination) {
+        Pending batch;
+        synchronized (lock) {
+            batch = pending.remove(destination);
+            if (batch == null) {
+                return;
+            }
+            queued -= batch.items.size();
+        }
+        try {
+            Object frame = batch.latestOnly ? ((Supplier<?>) batch.items.get(0)).get() : batch.items;
+            messagingTemplate.convertAndSend(destination, frame);
+            framesSent.incrementAndGet();
+        } catch (RuntimeException e) {
+            System.err.println("Broadcast to " + destination + " failed: " + e.getMessage());
+        }
+    }
+
+    private static final class Pending {
+        private final boolean latestOnly;
+        private final List<Object> items = new ArrayList<>();
+        private boolean scheduled;
+
+        private Pending(boolean latestOnly) {
+            this.latestOnly = latestOnly;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.bicoChat_backend.service;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caps the asynchronous operations in flight against the store, with a bounded FIFO queue in front
+ * and a deadline on every caller.
+ *
+ * An operation that finds no free permit waits in the queue; when the queue is full too it fails at
+ * once with {@link StoreOverloadedException}. A caller still waiting when the deadline expires gets a
+ * {@link StoreTimeoutException}, but the permit is only given back when the operation itself ends, so a
+ * stalled store fills the bulkhead and new work is rejected instead of piling up.
+ *
+ * Work that must not be lost (listener callbacks) uses {@link #executeWaiting}: when the queue is full
+ * the caller waits for room instead of being rejected, so the backlog stays bounded and pushes back on
+ * whoever produces it.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long timeoutMillis;
+    private final Executor executor;
+
+    private final Object lock = new Object();
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+    private int inFlight;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+
+    // bulkhead whose task the current thread is running, see executeWaiting
+    private static final ThreadLocal<Bulkhead> RUNNING = new ThreadLocal<>();
+
+    /**
+     * @param name used in errors and metrics, e.g. "reads"
+     * @param maxConcurrent operations allowed in flight at the same time
+     * @param maxQueued operations allowed to wait for a permit
+     * @param timeoutMillis deadline of each caller, 0 for none
+     * @param executor runs the operations started from the queue
+     */
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, long timeoutMillis, Executor executor) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+    }
+
+    /**
+     * Bulkhead that never queues, rejects or times out (tests and tools)
+     */
+    public static Bulkhead unbounded(String name) {
+        return new Bulkhead(name, Integer.MAX_VALUE, 0, 0, Runnable::run);
+    }
+
+    /**
+     * Start the operation now if a permit is free, queue it otherwise
+     * @return future of the operation, failed with a {@link StoreUnavailableException} on rejection or timeout
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+        return admit(operation, false);
+    }
+
+    /**
+     * Run a task on the bulkhead executor, counted like any other operation
+     */
+    public CompletableFuture<Void> execute(Runnable task) {
+        return submit(() -> CompletableFuture.runAsync(task, executor));
+    }
+
+    /**
+     * Like {@link #execute}, but a full queue makes the caller wait for room (counted in
+     * {@link #getStalled}) instead of rejecting the task. A task of this bulkhead that submits another
+     * one does not wait (it would wait for itself): its task is queued beyond the limit.
+     */
+    public CompletableFuture<Void> executeWaiting(Runnable task) {
+        return admit(() -> CompletableFuture.runAsync(() -> {
+            RUNNING.set(this);
+            try {
+                task.run();
+            } finally {
+                RUNNING.remove();
+            }
+        }, executor), true);
+    }
+
+    private <T> CompletableFuture<T> admit(Supplier<CompletableFuture<T>> operation, boolean neverReject) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        boolean startNow;
+        synchronized (lock) {
+            if (neverReject && RUNNING.get() != this && inFlight >= maxConcurrent && queue.size() >= maxQueued) {
+                stalled.incrementAndGet();
+                while (inFlight >= maxConcurrent && queue.size() >= maxQueued) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        rejected.incrementAndGet();
+                        return CompletableFuture.failedFuture(new StoreOverloadedException(name));
+                    }
+                }
+            }
+            startNow = inFlight < maxConcurrent;
+            if (startNow) {
+                inFlight++;
+            } else if (queue.size() < maxQueued || neverReject) {
+                queue.add(() -> run(operation, result));
+            } else {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(new StoreOverloadedException(name));
+            }
+        }
+        if (startNow) {
+            run(operation, result);
+        }
+        return withDeadline(result);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * Callers of {@link #executeWaiting} that found the queue full and had to wait
+     */
+    public long getStalled() {
+        return stalled.get();
+    }
+
+    private <T> void run(Supplier<CompletableFuture<T>> operation, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // the caller gave up while the operation was queued
+            release();
+            return;
+        }
+        CompletableFuture<T> started;
+        try {
+            started = operation.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            release();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (lock) {
+            next = queue.poll();
+            if (next == null) {
+                inFlight--;
+            }
+            // a permit or a queue slot is free: callers waiting for room may go on
+            lock.notifyAll();
+        }
+        if (next != null) {
+            // the permit goes straight to the next operation, started off the completing thread
+            executor.execute(next);
+        }
+    }
+
+    private <T> CompletableFuture<T> withDeadline(CompletableFuture<T> result) {
+        if (timeoutMillis <= 0) {
+            return result;
+        }
+        CompletableFuture<T> caller = new CompletableFuture<>();
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                caller.complete(value);
+            } else if (cause instanceof TimeoutException) {
+                timedOut.incrementAndGet();
+                caller.completeExceptionally(new StoreTimeoutException(name, timeoutMillis));
+            } else {
+                caller.completeExceptionally(cause);
+            }
+        });
+        return caller;
+    }
+}
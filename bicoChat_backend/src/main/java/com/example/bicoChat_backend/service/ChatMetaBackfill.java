@@ -0,0 +1,95 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import com.example.bicoChat_backend.model.Chat;
+import com.example.bicoChat_backend.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Builds chatMeta/{chatId} at startup for the chats created before the metadata index existed.
+ * New chats get their summary in the same write that creates them. Chats are read a page at a time
+ * and a summary is written only for the chats that have none, so an existing summary (newer than
+ * anything the job could compute) is never overwritten and an interrupted run resumes safely.
+ * A completed run leaves {@link #MARKER_PATH}, and later startups skip the job after one small read.
+ * It runs after {@link EpochTimestampMigration}, which may re-key the last messages.
+ */
+@Component
+@Order(2)
+public class ChatMetaBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMetaBackfill.class);
+
+    private static final int PAGE_SIZE = 50;
+
+    static final String MARKER_PATH = "migrations/chatMetaBackfill";
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // straight to the store: a one-off scan must not fill the path cache with listeners
+        ChatStore chatStore = firebaseService.getChatStore();
+        if (chatStore.exists(MARKER_PATH).join()) {
+            return;
+        }
+        int indexed = 0;
+        String cursor = null;
+        NavigableMap<String, Object> page;
+        do {
+            page = firebaseService.getChildrenByKey("chats", cursor, null, PAGE_SIZE, false).join();
+            Map<String, CompletableFuture<Boolean>> indexedAlready = new HashMap<>();
+            page.keySet().forEach(chatId -> indexedAlready.put(chatId, chatStore.exists("chatMeta/" + chatId)));
+
+            Map<String, Object> updates = new HashMap<>();
+            page.forEach((chatId, rawChat) -> {
+                if (!indexedAlready.get(chatId).join()) {
+                    updates.put("chatMeta/" + chatId, summarize(chatId, rawChat));
+                }
+            });
+            if (!updates.isEmpty()) {
+                firebaseService.updateMulti(updates).join();
+                indexed += updates.size();
+            }
+            cursor = page.isEmpty() ? null : page.lastKey();
+        } while (page.size() == PAGE_SIZE);
+
+        firebaseService.set(MARKER_PATH, System.currentTimeMillis()).join();
+        log.info("Chat metadata index: {} chats indexed", indexed);
+    }
+
+    private static ChatSummary summarize(String chatId, Object rawChat) {
+        ChatSummary summary = new ChatSummary(chatId, StoreValues.convert(rawChat, Chat.class), 0);
+        NavigableMap<String, Object> messages = StoreValues.children(StoreValues.child(rawChat, "messages"));
+        summary.setMessageCount(messages.size());
+        // legacy keys are not time ordered: the last message is the newest one
+        String lastId = null;
+        Message last = null;
+        for (Map.Entry<String, Object> entry : messages.entrySet()) {
+            Message message = StoreValues.convert(entry.getValue(), Message.class);
+            if (message != null && (last == null || message.getTimestamp() >= last.getTimestamp())) {
+                lastId = entry.getKey();
+                last = message;
+            }
+        }
+        if (last != null) {
+            summary.setLastMessageId(lastId);
+            summary.setLastMessage(last.getContent());
+            summary.setLastSender(last.getSender());
+            summary.setLastActivity(last.getTimestamp());
+            summary.setLastMessageSeq(last.getSeq());
+        }
+        return summary;
+    }
+}
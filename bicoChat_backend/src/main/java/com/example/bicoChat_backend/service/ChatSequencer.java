@@ -0,0 +1,114 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import com.example.bicoChat_backend.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Single writer of the messages of each chat: every message gets the next seq of its chat, with no
+ * duplicates, and reaches the store in seq order.
+ *
+ * Seqs come from a counter in memory, seeded once per chat from chatMeta/{chatId}/lastSeq (or, for chats
+ * older than the sequencer, from their newest message seq or their message count). Every append writes
+ * lastSeq together with its message, so a restart continues where the counter stopped. Appends do not
+ * wait for each other: the seq is taken and the write queued under the lock of the chat, once the write
+ * bulkhead admits it, so the store receives the writes of a chat in seq order (the write-behind queue and
+ * the store keep that order) while several of them are in flight.
+ *
+ * The counter is right only if a single instance appends to a chat: with several instances, sends are
+ * stored by the owner of the chat (see {@link ListenerOwnership} and {@link MessageRouter}).
+ *
+ * A failed write leaves its seq as a hole, like a deleted message: clients that fetch a range and miss
+ * a seq below lastSeq treat it as gone.
+ */
+@Component
+public class ChatSequencer {
+
+    private static final String CHATS_PATH = "chats";
+    private static final String CHAT_META_PATH = "chatMeta";
+
+    public record Slot(String messageId, long seq) {}
+
+    // counter of a chat, usable once seeded
+    private static final class Lane {
+        private final CompletableFuture<Long> seed;
+        private long lastSeq;
+
+        private Lane(CompletableFuture<Long> seed) {
+            this.seed = seed;
+        }
+    }
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final FirebaseService firebaseService;
+    private final MessageIdGenerator messageIdGenerator;
+
+    @Autowired
+    public ChatSequencer(FirebaseService firebaseService, MessageIdGenerator messageIdGenerator) {
+        this.firebaseService = firebaseService;
+        this.messageIdGenerator = messageIdGenerator;
+    }
+
+    /**
+     * Allocate the next id and seq of a chat and queue the writes of the message built with them
+     * @param writes the multi-path update storing the message; lastSeq is added to it
+     * @return future of the slot, completed when the store acknowledges the writes
+     */
+    public CompletableFuture<Slot> append(String chatId, Function<Slot, Map<String, Object>> writes) {
+        Lane lane = lane(chatId);
+        return lane.seed.thenCompose(seed -> {
+            Slot[] allocated = new Slot[1];
+            return firebaseService.updateMultiInOrder(lane, () -> {
+                lane.lastSeq = Math.max(lane.lastSeq, seed) + 1;
+                Slot slot = new Slot(messageIdGenerator.nextId(), lane.lastSeq);
+                allocated[0] = slot;
+                Map<String, Object> updates = writes.apply(slot);
+                updates.put(CHAT_META_PATH + "/" + chatId + "/lastSeq", slot.seq());
+                return updates;
+            }).thenApply(v -> allocated[0]);
+        });
+    }
+
+    /**
+     * Chats with a counter in memory
+     */
+    public int getActiveChats() {
+        return lanes.size();
+    }
+
+    private Lane lane(String chatId) {
+        Lane lane = lanes.computeIfAbsent(chatId, id -> new Lane(loadSeed(id)));
+        // a failed read is not kept: the next send tries again
+        lane.seed.whenComplete((seed, error) -> {
+            if (error != null) {
+                lanes.remove(chatId, lane);
+            }
+        });
+        return lane;
+    }
+
+    private CompletableFuture<Long> loadSeed(String chatId) {
+        CompletableFuture<ChatSummary> meta = firebaseService.get(CHAT_META_PATH + "/" + chatId, ChatSummary.class);
+        CompletableFuture<NavigableMap<String, Object>> newest =
+                firebaseService.getChildrenByKey(CHATS_PATH + "/" + chatId + "/messages", null, null, 1, true);
+
+        return meta.thenCombine(newest, (summary, children) -> {
+            long seed = summary != null ? Math.max(summary.getLastSeq(), summary.getMessageCount()) : 0;
+            for (Object raw : children.values()) {
+                Message message = StoreValues.convert(raw, Message.class);
+                if (message != null) {
+                    seed = Math.max(seed, message.getSeq());
+                }
+            }
+            return seed;
+        });
+    }
+}
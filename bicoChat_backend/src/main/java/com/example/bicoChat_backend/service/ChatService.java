@@ -1,6 +1,7 @@
 package com.example.bicoChat_backend.service;
 
 import com.example.bicoChat_backend.dto.response.ChatResponse;
+import com.example.bicoChat_backend.dto.response.ChatSummary;
 import com.example.bicoChat_backend.model.Chat;
 import com.example.bicoChat_backend.model.Message;
 import com.example.bicoChat_backend.model.User;
@@ -8,7 +9,6 @@ import com.google.firebase.database.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -17,6 +17,7 @@ public class ChatService {
 
     private static final String CHATS_PATH = "chats";
     private static final String USERS_PATH = "users";
+    private static final String CHAT_META_PATH = "chatMeta";
 
     @Autowired
     private FirebaseService firebaseService;
@@ -24,37 +25,72 @@ public class ChatService {
     @Autowired
     private UserService userService;
 
-    public CompletableFuture<List<ChatResponse>> getAllChats() {
-        GenericTypeIndicator<Map<String, Chat>> typeIndicator = new GenericTypeIndicator<Map<String, Chat>>() {};
-
-        return firebaseService.getWithTypeIndicator(CHATS_PATH, typeIndicator)
-                .thenApply(chatsMap -> {
-                    List<ChatResponse> chatResponseList = new ArrayList<>();
-                    if (chatsMap != null) {
-                        for (Map.Entry<String, Chat> entry : chatsMap.entrySet()) {
-                            chatResponseList.add(new ChatResponse(entry.getKey(), entry.getValue()));
-                        }
-                    } else {
+    @Autowired
+    private ChatSequencer chatSequencer;
+
+    /**
+     * Every chat as a summary read from the chatMeta index: no message is downloaded
+     */
+    public CompletableFuture<List<ChatSummary>> getAllChats() {
+        return firebaseService.get(CHAT_META_PATH, Object.class)
+                .thenApply(rawMeta -> {
+                    if (rawMeta == null) {
                         System.out.println("No chats found on Firebase!");
                     }
-                    return chatResponseList;
+                    return toSummaries(rawMeta);
                 });
     }
 
-    public CompletableFuture<Optional<ChatResponse>> getChatById(String chatId) {
-        return firebaseService.get(CHATS_PATH + "/" + chatId, Chat.class)
-                .thenApply(chat -> {
-                    if (chat != null) {
-                        return Optional.of(new ChatResponse(chatId, chat));
+    /**
+     * Summaries from the raw value of the chatMeta node (e.g. the value delivered by a listener)
+     */
+    public static List<ChatSummary> toSummaries(Object rawMeta) {
+        List<ChatSummary> summaries = new ArrayList<>();
+        StoreValues.children(rawMeta).forEach((chatId, rawSummary) -> summaries.add(toSummary(chatId, rawSummary)));
+        return summaries;
+    }
+
+    /**
+     * Summary from the raw value of chatMeta/{chatId}
+     */
+    public static ChatSummary toSummary(String chatId, Object rawSummary) {
+        ChatSummary summary = StoreValues.convert(rawSummary, ChatSummary.class);
+        if (summary == null) {
+            summary = new ChatSummary();
+        }
+        summary.setId(chatId);
+        return summary;
+    }
+
+    public CompletableFuture<Optional<ChatSummary>> getChatById(String chatId) {
+        return firebaseService.get(CHAT_META_PATH + "/" + chatId, ChatSummary.class)
+                .thenApply(summary -> {
+                    if (summary != null) {
+                        summary.setId(chatId);
+                        return Optional.of(summary);
                     }
                     return Optional.empty();
                 });
     }
 
+    /**
+     * Participants of a chat, read from the metadata index
+     */
+    public CompletableFuture<List<String>> getParticipants(String chatId) {
+        GenericTypeIndicator<List<String>> typeIndicator = new GenericTypeIndicator<List<String>>() {};
+        return firebaseService.getWithTypeIndicator(CHAT_META_PATH + "/" + chatId + "/participants", typeIndicator)
+                .thenApply(participants -> participants != null ? participants : new ArrayList<String>());
+    }
+
     public CompletableFuture<ChatResponse> createChat(Chat chat) {
         String chatId = UUID.randomUUID().toString();
 
-        return firebaseService.set(CHATS_PATH + "/" + chatId, chat)
+        // chat and summary are written together, so the index never misses a chat
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(CHATS_PATH + "/" + chatId, chat);
+        updates.put(CHAT_META_PATH + "/" + chatId, new ChatSummary(chatId, chat, System.currentTimeMillis()));
+
+        return firebaseService.updateMulti(updates)
                 .thenApply(v -> {
                     updateChatReferencesInUserProfiles(chatId, chat);
                     return new ChatResponse(chatId, chat);
@@ -70,7 +106,7 @@ public class ChatService {
                     User.ChatInfo chatInfo = new User.ChatInfo(
                             "",
                             chat.getName() != null ? chat.getName() : userId,
-                            LocalDateTime.now().toString(),
+                            System.currentTimeMillis(),
                             0,
                             "system" // lastUser
                     );
@@ -88,74 +124,143 @@ public class ChatService {
         }
     }
 
+    /**
+     * Send pipeline shared by REST and WebSocket sends. The message, the chatMeta summary and the
+     * chatUser preview of every participant are written by one multi-path update, with the message count
+     * bumped by a server side increment: one round trip whatever the group size, and no increment lost
+     * between concurrent senders. Each preview gets the seq of the message, from which the unread count
+     * of the participant follows (see {@link User.ChatInfo#getUnreadCount}), and the read watermark of the
+     * sender moves to the message. The reads before it (participants,
+     * names) are served by the path cache. Id and seq come from the {@link ChatSequencer}, which queues
+     * the update with lastSeq and does not wait for the previous sends of the chat.
+     * A chat missing from chatMeta is refused with an IllegalArgumentException before anything is written.
+     */
     public CompletableFuture<Map.Entry<String, Message>> addMessage(String chatId, Message message) {
-        String messageId = UUID.randomUUID().toString();
-
-        return firebaseService.set(CHATS_PATH + "/" + chatId + "/messages/" + messageId, message)
-                .thenCompose(v -> updateLastMessageForParticipants(chatId, message))
-                .thenApply(v -> new AbstractMap.SimpleEntry<>(messageId, message));
-    }
-
-    private CompletableFuture<Void> updateLastMessageForParticipants(String chatId, Message message) {
-        return getChatById(chatId).thenCompose(optionalChat -> {
-            if (optionalChat.isPresent()) {
-                Chat chat = optionalChat.get().getChat();
-                List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-                for (String userId : chat.getParticipants()) {
-                    CompletableFuture<Void> future = userService.getUserById(userId)
-                            .thenCompose(optionalUser -> {
-                                if (optionalUser.isPresent()) {
-                                    User user = optionalUser.get().getUser();
-                                    Map<String, User.ChatInfo> userChats = user.getChatUser();
-
-                                    if (userChats != null && userChats.containsKey(chatId)) {
-                                        User.ChatInfo chatInfo = userChats.get(chatId);
-                                        chatInfo.setLastMessage(message.getContent());
-                                        chatInfo.setTimestamp(message.getTimestamp());
-                                        chatInfo.setLastUser(message.getSender());
-
-                                        if (!userId.equals(message.getSender())) {
-                                            chatInfo.setUnreadCount(chatInfo.getUnreadCount() + 1);
-                                        }
-
-                                        userChats.put(chatId, chatInfo);
-                                        user.setChatUser(userChats);
-
-                                        return firebaseService.set(USERS_PATH + "/" + userId, user);
-                                    }
-                                }
-                                return CompletableFuture.completedFuture(null);
-                            });
-
-                    futures.add(future);
-                }
+        return getChatById(chatId)
+                .thenCompose(optionalSummary -> {
+                    if (optionalSummary.isEmpty()) {
+                        return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown chat " + chatId));
+                    }
+                    ChatSummary summary = optionalSummary.get();
+                    return previewNames(summary).thenCompose(names -> chatSequencer.append(chatId, slot -> {
+                        String messageId = slot.messageId();
+                        message.setSeq(slot.seq());
+
+                        Map<String, Object> updates = new HashMap<>();
+                        updates.put(CHATS_PATH + "/" + chatId + "/messages/" + messageId, message);
+
+                        String metaPath = CHAT_META_PATH + "/" + chatId;
+                        updates.put(metaPath + "/lastMessage", message.getContent());
+                        updates.put(metaPath + "/lastSender", message.getSender());
+                        updates.put(metaPath + "/lastMessageId", messageId);
+                        updates.put(metaPath + "/lastMessageSeq", message.getSeq());
+                        updates.put(metaPath + "/lastActivity", message.getTimestamp());
+                        updates.put(metaPath + "/messageCount", StoreValues.increment(1));
+
+                        for (String userId : summary.getParticipants()) {
+                            if (userId == null || userId.isBlank()) continue;
+
+                            String chatUserPath = USERS_PATH + "/" + userId + "/chatUser/" + chatId;
+                            updates.put(chatUserPath + "/name", names.get(userId));
+                            updates.put(chatUserPath + "/lastMessage", message.getContent());
+                            updates.put(chatUserPath + "/lastUser", message.getSender());
+                            updates.put(chatUserPath + "/timestamp", message.getTimestamp());
+                            updates.put(chatUserPath + "/lastMessageSeq", slot.seq());
+                        }
+                        // whoever writes has read the chat up to their own message
+                        putReadWatermark(updates, chatId, message.getSender(), messageId, slot.seq(), message.getTimestamp());
+                        return updates;
+                    }));
+                })
+                .thenApply(slot -> new AbstractMap.SimpleEntry<>(slot.messageId(), message));
+    }
 
-                return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    /**
+     * Name shown in each participant's chat list: the other user's username in a one to one chat,
+     * the chat name otherwise
+     */
+    private CompletableFuture<Map<String, String>> previewNames(ChatSummary summary) {
+        List<String> participants = summary.getParticipants();
+        String chatName = summary.getName() != null ? summary.getName() : "Chat";
+        Map<String, CompletableFuture<String>> usernames = new HashMap<>();
+        if (participants.size() == 2) {
+            for (String userId : participants) {
+                usernames.put(userId, firebaseService.get(USERS_PATH + "/" + userId + "/username", String.class));
             }
-            return CompletableFuture.completedFuture(null);
-        });
+        }
+
+        return CompletableFuture.allOf(usernames.values().toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, String> names = new HashMap<>();
+                    for (String userId : participants) {
+                        String otherId = participants.stream().filter(p -> !p.equals(userId)).findFirst().orElse(null);
+                        String username = otherId != null && usernames.containsKey(otherId) ? usernames.get(otherId).join() : null;
+                        names.put(userId, username != null ? username : chatName);
+                    }
+                    return names;
+                });
     }
 
+    /**
+     * Move the read watermark of a user to the last message of the chat: one multi-path update of a
+     * few fields, however long the chat. Messages are not touched: whether a message has been read
+     * follows from the watermarks (see {@link ChatSummary#isReadByOthers}), and so does the unread count
+     * of the reader.
+     */
     public CompletableFuture<Void> markChatAsRead(String chatId, String userId) {
-        return userService.getUserById(userId).thenCompose(optionalUser -> {
-            if (optionalUser.isPresent()) {
-                User user = optionalUser.get().getUser();
-                Map<String, User.ChatInfo> userChats = user.getChatUser();
-
-                if (userChats != null && userChats.containsKey(chatId)) {
-                    User.ChatInfo chatInfo = userChats.get(chatId);
-                    chatInfo.setUnreadCount(0);
-                    userChats.put(chatId, chatInfo);
-                    user.setChatUser(userChats);
+        return getChatById(chatId).thenCompose(optionalSummary -> {
+            if (optionalSummary.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Map<String, Object> updates = new HashMap<>();
+            putReadWatermark(updates, chatId, userId, optionalSummary.get());
+            return firebaseService.updateMulti(updates);
+        });
+    }
 
-                    return firebaseService.set(USERS_PATH + "/" + userId, user);
+    /**
+     * Watermarks of every participant, for callers that do not say who is reading
+     */
+    public CompletableFuture<Void> markChatAsReadByAll(String chatId) {
+        return getChatById(chatId).thenCompose(optionalSummary -> {
+            if (optionalSummary.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            ChatSummary summary = optionalSummary.get();
+            Map<String, Object> updates = new HashMap<>();
+            for (String userId : summary.getParticipants()) {
+                if (userId != null && !userId.isBlank()) {
+                    putReadWatermark(updates, chatId, userId, summary);
                 }
             }
-            return CompletableFuture.completedFuture(null);
+            return firebaseService.updateMulti(updates);
         });
     }
 
+    private static void putReadWatermark(Map<String, Object> updates, String chatId, String userId, ChatSummary summary) {
+        // the counter of older versions is dropped: the unread count follows from the watermark
+        updates.put(USERS_PATH + "/" + userId + "/chatUser/" + chatId + "/unreadCount", null);
+        if (summary.getLastMessageId() != null) {
+            putReadWatermark(updates, chatId, userId, summary.getLastMessageId(), summary.getLastMessageSeq(),
+                    summary.getLastActivity());
+        }
+    }
+
+    private static void putReadWatermark(Map<String, Object> updates, String chatId, String userId,
+                                         String messageId, long seq, long timestamp) {
+        String chatUserPath = USERS_PATH + "/" + userId + "/chatUser/" + chatId;
+        updates.put(chatUserPath + "/lastReadMessageId", messageId);
+        updates.put(chatUserPath + "/lastReadSeq", seq);
+        Map<String, Object> watermark = new HashMap<>();
+        watermark.put("seq", seq);
+        watermark.put("timestamp", timestamp);
+        updates.put(CHAT_META_PATH + "/" + chatId + "/readUpTo/" + userId, watermark);
+    }
+
+    /**
+     * All the messages of a chat, in key order: chronological for time ordered ids, not for the legacy
+     * keys of chats not migrated yet (callers that need the order sort by timestamp)
+     */
     public CompletableFuture<Map<String, Message>> getMessagesMap(String chatId) {
         GenericTypeIndicator<Map<String, Message>> typeIndicator = new GenericTypeIndicator<Map<String, Message>>() {};
         return firebaseService.getWithTypeIndicator(CHATS_PATH + "/" + chatId + "/messages", typeIndicator);
@@ -164,20 +269,41 @@ public class ChatService {
 
     public CompletableFuture<Void> updateMessage(String chatId, String messageId, String newContent) {
         String messagePath = CHATS_PATH + "/" + chatId + "/messages/" + messageId;
+        String metaPath = CHAT_META_PATH + "/" + chatId;
+
+        CompletableFuture<Message> messageFuture = firebaseService.get(messagePath, Message.class);
+        CompletableFuture<String> lastMessageIdFuture = firebaseService.get(metaPath + "/lastMessageId", String.class);
 
-        return firebaseService.get(messagePath, Message.class)
-                .thenCompose(existingMessage -> {
+        return messageFuture.thenCombine(lastMessageIdFuture, (existingMessage, lastMessageId) -> {
+                    Map<String, Object> updates = new HashMap<>();
                     if (existingMessage != null) {
                         existingMessage.setContent(newContent);
-                        return firebaseService.set(messagePath, existingMessage);
+                        updates.put(messagePath, existingMessage);
+                        // the preview shows the last message: keep it in sync when that one is edited
+                        if (messageId.equals(lastMessageId)) {
+                            updates.put(metaPath + "/lastMessage", newContent);
+                        }
                     }
-                    return CompletableFuture.completedFuture(null);
-                });
+                    return updates;
+                })
+                .thenCompose(updates -> updates.isEmpty()
+                        ? CompletableFuture.completedFuture(null)
+                        : firebaseService.updateMulti(updates));
     }
 
     public CompletableFuture<Void> deleteMessage(String chatId, String messageId) {
         String messagePath = CHATS_PATH + "/" + chatId + "/messages/" + messageId;
-        return firebaseService.delete(messagePath);
+        String countPath = CHAT_META_PATH + "/" + chatId + "/messageCount";
+
+        return firebaseService.exists(messagePath)
+                .thenCompose(exists -> {
+                    Map<String, Object> updates = new HashMap<>();
+                    updates.put(messagePath, null);
+                    if (exists) {
+                        updates.put(countPath, StoreValues.increment(-1));
+                    }
+                    return firebaseService.updateMulti(updates);
+                });
     }
 
 
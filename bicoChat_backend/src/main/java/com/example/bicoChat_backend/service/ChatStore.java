@@ -0,0 +1,146 @@
+package com.example.bicoChat_backend.service;
+
+import com.google.firebase.database.GenericTypeIndicator;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * Storage backend behind {@link FirebaseService}.
+ * Paths use the Realtime Database syntax ("chats/{chatId}/messages/{messageId}") and values
+ * are plain trees of Map/List/String/Long/Double/Boolean, exactly like a Firebase snapshot.
+ */
+public interface ChatStore {
+
+    /**
+     * Get data at the specified path and convert it to the given type
+     * @param path database path
+     * @param valueType Class to convert the data to
+     * @param <T> Type parameter
+     * @return CompletableFuture with the result, null if the path is empty
+     */
+    <T> CompletableFuture<T> get(String path, Class<T> valueType);
+
+    /**
+     * Get data with a specific type indicator for complex generic types
+     * @param path database path
+     * @param typeIndicator GenericTypeIndicator for the expected data type
+     * @param <T> Type parameter
+     * @return CompletableFuture with the result, null if the path is empty
+     */
+    <T> CompletableFuture<T> getWithTypeIndicator(String path, GenericTypeIndicator<T> typeIndicator);
+
+    /**
+     * Check if data exists at the specified path
+     * @param path database path
+     * @return CompletableFuture with boolean result
+     */
+    CompletableFuture<Boolean> exists(String path);
+
+    /**
+     * Read a window of the children of a node ordered by key (orderByKey + limitToFirst/limitToLast)
+     * @param path database path of the parent node
+     * @param startAfter exclusive lower bound on the child key, null for no bound
+     * @param endBefore exclusive upper bound on the child key, null for no bound
+     * @param limit maximum number of children returned
+     * @param fromEnd true to keep the last children of the window (limitToLast), false for the first ones
+     * @return CompletableFuture with the raw children ordered by key
+     */
+    CompletableFuture<NavigableMap<String, Object>> getChildrenByKey(String path, String startAfter, String endBefore,
+                                                                     int limit, boolean fromEnd);
+
+    /**
+     * Replace the data at the specified path, a null value deletes it
+     * @param path database path
+     * @param value Value to set
+     * @return CompletableFuture that completes when the write is acknowledged
+     */
+    CompletableFuture<Void> set(String path, Object value);
+
+    /**
+     * Update the given children of the node at the specified path
+     * @param path database path
+     * @param updates Map of child paths (relative to path) to new values
+     * @return CompletableFuture that completes when the write is acknowledged
+     */
+    CompletableFuture<Void> update(String path, Map<String, Object> updates);
+
+    /**
+     * Atomically apply updates to several paths, all relative to the root
+     * @param updates Map of absolute paths to new values (null deletes)
+     * @return CompletableFuture that completes when the write is acknowledged
+     */
+    CompletableFuture<Void> updateMulti(Map<String, Object> updates);
+
+    /**
+     * Atomically replace the value at path with a function of its current value: the store retries
+     * the function when another writer changes the value in between (compare-and-set)
+     * @param path database path
+     * @param update receives the current raw value (null when empty) and returns the new one; it may run
+     *               more than once, so it must have no side effects
+     * @return CompletableFuture with the committed raw value
+     */
+    CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update);
+
+    /**
+     * Delete data at the specified path
+     * @param path database path
+     * @return CompletableFuture that completes when the write is acknowledged
+     */
+    default CompletableFuture<Void> delete(String path) {
+        return set(path, null);
+    }
+
+    /**
+     * Listen to the direct children of a node. Existing children are replayed
+     * as {@link ChildListener#onChildAdded} right after registration.
+     * @param path database path of the parent node
+     * @param listener callback receiving the raw child values
+     * @return handle used to stop listening
+     */
+    Registration addChildListener(String path, ChildListener listener);
+
+    /**
+     * Listen to the whole value of a node. The current value is delivered right after registration.
+     * @param path database path
+     * @param listener callback receiving the raw value
+     * @return handle used to stop listening
+     */
+    Registration addValueListener(String path, ValueListener listener);
+
+    /**
+     * Callback for child events, values are raw trees (see {@link StoreValues#convert})
+     */
+    interface ChildListener {
+        void onChildAdded(String key, Object value);
+
+        void onChildChanged(String key, Object value);
+
+        void onChildRemoved(String key, Object value);
+
+        default void onCancelled(Exception error) {
+            System.err.println("Store listener cancelled: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Callback for value events, the value is a raw tree or null when the node is empty
+     */
+    interface ValueListener {
+        void onValue(Object value);
+
+        default void onCancelled(Exception error) {
+            System.err.println("Store listener cancelled: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Handle returned by listener registrations
+     */
+    @FunctionalInterface
+    interface Registration {
+        void remove();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.ChatEvent;
+import com.example.bicoChat_backend.dto.response.ChatListSnapshot;
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Versioned view of the chatMeta index behind /topic/chats: every change becomes one delta
+ * event, and the snapshot returned with a version is consistent with the events that follow it.
+ *
+ * Versions start again from 0 in a new epoch (the start of this feed), so a client can tell a
+ * restart from a gap. The feed is seeded with the whole index before the listener is attached:
+ * the listener then replays every existing chat as added, and a replayed chat identical to the
+ * seeded one is not an event.
+ */
+@Service
+public class ChatSummaryFeed {
+
+    private final Object lock = new Object();
+    private final Map<String, ChatSummary> summaries = new TreeMap<>();
+    // raw value of each summary, to recognize the replay of an unchanged chat
+    private final Map<String, Object> rawSummaries = new TreeMap<>();
+    private final long epoch = System.currentTimeMillis();
+    private long version;
+
+    /**
+     * Load the whole index (the raw value of chatMeta) without producing events
+     */
+    public void seed(Object rawMeta) {
+        synchronized (lock) {
+            StoreValues.children(rawMeta).forEach((chatId, rawSummary) -> {
+                summaries.put(chatId, ChatService.toSummary(chatId, rawSummary));
+                rawSummaries.put(chatId, StoreValues.toRaw(rawSummary));
+            });
+        }
+    }
+
+    /**
+     * Record a change of one chat summary
+     * @param type {@link ChatEvent#ADDED}, {@link ChatEvent#CHANGED} or {@link ChatEvent#REMOVED}
+     * @param rawSummary new raw summary, ignored for removals
+     * @return the event to publish, carrying the next version; null if nothing changed
+     */
+    public ChatEvent apply(String type, String chatId, Object rawSummary) {
+        synchronized (lock) {
+            if (ChatEvent.REMOVED.equals(type)) {
+                rawSummaries.remove(chatId);
+                return summaries.remove(chatId) != null ? new ChatEvent(type, epoch, ++version, chatId, null) : null;
+            }
+            Object previous = rawSummaries.put(chatId, StoreValues.toRaw(rawSummary));
+            if (previous != null && Objects.equals(previous, rawSummary)) {
+                return null;
+            }
+            if (previous != null) {
+                // a chat replayed as added, changed since the seed
+                type = ChatEvent.CHANGED;
+            }
+            ChatSummary summary = ChatService.toSummary(chatId, rawSummary);
+            summaries.put(chatId, summary);
+            return new ChatEvent(type, epoch, ++version, chatId, summary);
+        }
+    }
+
+    public ChatListSnapshot snapshot() {
+        synchronized (lock) {
+            return new ChatListSnapshot(epoch, version, new ArrayList<>(summaries.values()));
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.model.StoreDocument;
+import com.example.bicoChat_backend.repository.StoreDocumentRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.firebase.database.GenericTypeIndicator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link ChatStore} kept entirely in memory and persisted to H2 through JPA.
+ * Enabled with bicochat.store=embedded, it needs no Google credentials and serves reads from memory.
+ *
+ * The tree is copy-on-write: readers grab the current root without locking, writers copy the nodes
+ * along the written paths under a single lock. Every subtree at depth 2 ("users/{uid}", "chatMeta/{chatId}")
+ * is stored as one {@link StoreDocument} row, except the messages: each chats/{chatId}/messages/{messageId}
+ * has its own row and the chats/{chatId} row holds the rest of the chat, so a send writes one small row
+ * instead of the whole history.
+ */
+@Service
+@ConditionalOnProperty(name = "bicochat.store", havingValue = "embedded")
+public class EmbeddedChatStore implements ChatStore {
+
+    private static final int DOCUMENT_DEPTH = 2;
+
+    // chats/{chatId}/messages/{messageId}
+    private static final int MESSAGE_DOCUMENT_DEPTH = 4;
+
+    private static final String MESSAGES = "messages";
+
+    private final StoreDocumentRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Object writeLock = new Object();
+
+    private final List<ListenerRegistration> registrations = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService eventExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "embedded-store-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Object root;
+
+    @Autowired
+    public EmbeddedChatStore(StoreDocumentRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Store without persistence, used by benchmarks and tests
+     */
+    public EmbeddedChatStore() {
+        this(null);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (repository == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            Object loaded = null;
+            Set<String> legacyChats = new TreeSet<>();
+            List<StoreDocument> documents = new ArrayList<>(repository.findAll());
+            // a chat row first, then its message rows on top of it
+            documents.sort(Comparator.comparingInt(document -> StoreValues.splitPath(document.getPath()).size()));
+            for (StoreDocument document : documents) {
+                try {
+                    Object value = StoreValues.toRaw(objectMapper.readValue(document.getJson(), Object.class));
+                    List<String> segments = StoreValues.splitPath(document.getPath());
+                    if (isChatDocument(segments) && StoreValues.children(value).containsKey(MESSAGES)) {
+                        // written before messages had rows of their own
+                        legacyChats.add(document.getPath());
+                    }
+                    loaded = StoreValues.with(loaded, segments, 0, value);
+                } catch (JsonProcessingException e) {
+                    System.err.println("Skipping unreadable store document " + document.getPath() + ": " + e.getMessage());
+                }
+            }
+            root = loaded;
+
+            if (!legacyChats.isEmpty()) {
+                Set<String> documentPaths = new TreeSet<>();
+                for (String chatPath : legacyChats) {
+                    List<String> segments = StoreValues.splitPath(chatPath);
+                    collectDocumentPaths(StoreValues.valueAt(loaded, segments), new ArrayList<>(segments), documentPaths);
+                }
+                saveDocuments(loaded, documentPaths);
+                System.out.println("Split the messages of " + legacyChats.size() + " chats into rows of their own");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventExecutor.shutdown();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String path, Class<T> valueType) {
+        try {
+            return CompletableFuture.completedFuture(StoreValues.convert(read(path), valueType));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getWithTypeIndicator(String path, GenericTypeIndicator<T> typeIndicator) {
+        try {
+            return CompletableFuture.completedFuture(StoreValues.convert(read(path), typeIndicator));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String path) {
+        return CompletableFuture.completedFuture(read(path) != null);
+    }
+
+    @Override
+    public CompletableFuture<NavigableMap<String, Object>> getChildrenByKey(String path, String startAfter, String endBefore,
+                                                                            int limit, boolean fromEnd) {
+        NavigableMap<String, Object> window = StoreValues.children(read(path));
+        if (startAfter != null) {
+            window = window.tailMap(startAfter, false);
+        }
+        if (endBefore != null) {
+            window = window.headMap(endBefore, false);
+        }
+        NavigableMap<String, Object> page = new TreeMap<>();
+        for (Map.Entry<String, Object> child : (fromEnd ? window.descendingMap() : window).entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.put(child.getKey(), child.getValue());
+        }
+        return CompletableFuture.completedFuture(page);
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Object value) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(StoreValues.normalizePath(path), value);
+        return updateMulti(updates);
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> updates) {
+        String base = StoreValues.normalizePath(path);
+        Map<String, Object> absolute = new HashMap<>();
+        updates.forEach((childPath, value) -> {
+            String relative = StoreValues.normalizePath(childPath);
+            absolute.put(base.isEmpty() ? relative : base + "/" + relative, value);
+        });
+        return updateMulti(absolute);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateMulti(Map<String, Object> updates) {
+        try {
+            apply(updates);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update) {
+        try {
+            // writers are serialized by writeLock: read and write happen with nobody in between
+            synchronized (writeLock) {
+                Map<String, Object> updates = new HashMap<>();
+                updates.put(StoreValues.normalizePath(path), update.apply(read(path)));
+                apply(updates);
+                return CompletableFuture.completedFuture(read(path));
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public Registration addChildListener(String path, ChildListener listener) {
+        return register(new ListenerRegistration(StoreValues.splitPath(path), listener, null));
+    }
+
+    @Override
+    public Registration addValueListener(String path, ValueListener listener) {
+        return register(new ListenerRegistration(StoreValues.splitPath(path), null, listener));
+    }
+
+    private Object read(String path) {
+        return StoreValues.valueAt(root, StoreValues.splitPath(path));
+    }
+
+    private Registration register(ListenerRegistration registration) {
+        synchronized (writeLock) {
+            Object current = root;
+            registrations.add(registration);
+            eventExecutor.execute(() -> registration.replay(current));
+        }
+        return () -> registrations.remove(registration);
+    }
+
+    /**
+     * Apply a multi-path update: swap the root, persist the touched documents, then queue the events
+     */
+    private void apply(Map<String, Object> updates) {
+        List<Map.Entry<List<String>, Object>> writes = new ArrayList<>();
+        updates.forEach((path, value) -> writes.add(new AbstractMap.SimpleEntry<>(StoreValues.splitPath(path), StoreValues.toRaw(value))));
+        // ancestors first, so a deeper path in the same batch is applied on top of them
+        writes.sort(Comparator.comparingInt(write -> write.getKey().size()));
+
+        synchronized (writeLock) {
+            Object oldRoot = root;
+            Object newRoot = oldRoot;
+            for (Map.Entry<List<String>, Object> write : writes) {
+                Object resolved = StoreValues.resolveIncrements(StoreValues.valueAt(newRoot, write.getKey()), write.getValue());
+                newRoot = StoreValues.with(newRoot, write.getKey(), 0, resolved);
+            }
+            persist(oldRoot, newRoot, writes);
+            root = newRoot;
+
+            List<List<String>> writtenPaths = writes.stream().map(Map.Entry::getKey).toList();
+            Object finalRoot = newRoot;
+            for (ListenerRegistration registration : registrations) {
+                eventExecutor.execute(() -> registration.dispatch(oldRoot, finalRoot, writtenPaths));
+            }
+        }
+    }
+
+    private void persist(Object oldRoot, Object newRoot, List<Map.Entry<List<String>, Object>> writes) {
+        if (repository == null) {
+            return;
+        }
+        Set<String> documentPaths = new TreeSet<>();
+        for (Map.Entry<List<String>, Object> write : writes) {
+            List<String> segments = write.getKey();
+            int depth = documentDepth(segments);
+            if (segments.size() >= depth) {
+                List<String> documentSegments = segments.subList(0, depth);
+                documentPaths.add(StoreValues.joinPath(documentSegments));
+                if (segments.size() == depth && isChatDocument(documentSegments)) {
+                    // the whole chat is replaced, its messages with it
+                    List<String> messagesPath = new ArrayList<>(documentSegments);
+                    messagesPath.add(MESSAGES);
+                    collectDocumentPaths(StoreValues.valueAt(oldRoot, messagesPath), messagesPath, documentPaths);
+                    collectDocumentPaths(StoreValues.valueAt(newRoot, messagesPath), new ArrayList<>(messagesPath), documentPaths);
+                }
+            } else {
+                collectDocumentPaths(StoreValues.valueAt(oldRoot, segments), new ArrayList<>(segments), documentPaths);
+                collectDocumentPaths(StoreValues.valueAt(newRoot, segments), new ArrayList<>(segments), documentPaths);
+            }
+        }
+        saveDocuments(newRoot, documentPaths);
+    }
+
+    /**
+     * Write the rows of documentPaths as they are in root, deleting the ones that are gone
+     */
+    private void saveDocuments(Object root, Set<String> documentPaths) {
+        List<StoreDocument> toSave = new ArrayList<>();
+        List<String> toDelete = new ArrayList<>();
+        for (String documentPath : documentPaths) {
+            List<String> segments = StoreValues.splitPath(documentPath);
+            Object value = StoreValues.valueAt(root, segments);
+            if (isChatDocument(segments) && value instanceof Map<?, ?> chat && chat.containsKey(MESSAGES)) {
+                Map<Object, Object> withoutMessages = new LinkedHashMap<>(chat);
+                withoutMessages.remove(MESSAGES);
+                value = withoutMessages.isEmpty() ? null : withoutMessages;
+            }
+            if (value == null) {
+                toDelete.add(documentPath);
+            } else {
+                try {
+                    toSave.add(new StoreDocument(documentPath, objectMapper.writeValueAsString(value)));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Cannot serialize " + documentPath, e);
+                }
+            }
+        }
+        if (!toDelete.isEmpty()) {
+            repository.deleteAllById(toDelete);
+        }
+        if (!toSave.isEmpty()) {
+            repository.saveAll(toSave);
+        }
+    }
+
+    private static void collectDocumentPaths(Object node, List<String> prefix, Set<String> out) {
+        if (node == null) {
+            return;
+        }
+        if (prefix.size() >= documentDepth(prefix) || !(node instanceof Map<?, ?> || node instanceof List<?>)) {
+            out.add(StoreValues.joinPath(prefix));
+            if (isChatDocument(prefix)) {
+                List<String> messagesPath = new ArrayList<>(prefix);
+                messagesPath.add(MESSAGES);
+                collectDocumentPaths(StoreValues.valueAt(node, List.of(MESSAGES)), messagesPath, out);
+            }
+            return;
+        }
+        StoreValues.children(node).forEach((key, child) -> {
+            List<String> childPrefix = new ArrayList<>(prefix);
+            childPrefix.add(key);
+            collectDocumentPaths(child, childPrefix, out);
+        });
+    }
+
+    /**
+     * Depth of the rows below segments: messages have one row each, everything else one per subtree at depth 2
+     */
+    private static int documentDepth(List<String> segments) {
+        return segments.size() >= 3 && "chats".equals(segments.get(0)) && MESSAGES.equals(segments.get(2))
+                ? MESSAGE_DOCUMENT_DEPTH : DOCUMENT_DEPTH;
+    }
+
+    private static boolean isChatDocument(List<String> segments) {
+        return segments.size() == DOCUMENT_DEPTH && "chats".equals(segments.get(0));
+    }
+
+    /**
+     * A child or value listener attached to a path. Events are always delivered on the
+     * single event thread, in write order.
+     */
+    private static final class ListenerRegistration {
+        private final List<String> segments;
+        private final String path;
+        private final ChildListener childListener;
+        private final ValueListener valueListener;
+
+        private ListenerRegistration(List<String> segments, ChildListener childListener, ValueListener valueListener) {
+            this.segments = segments;
+            this.path = StoreValues.joinPath(segments);
+            this.childListener = childListener;
+            this.valueListener = valueListener;
+        }
+
+        private void replay(Object currentRoot) {
+            Object value = StoreValues.valueAt(currentRoot, segments);
+            try {
+                if (valueListener != null) {
+                    valueListener.onValue(value);
+                } else {
+                    StoreValues.children(value).forEach(childListener::onChildAdded);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Store listener on " + path + " failed: " + e.getMessage());
+            }
+        }
+
+        private void dispatch(Object oldRoot, Object newRoot, List<List<String>> writtenPaths) {
+            Object oldValue = StoreValues.valueAt(oldRoot, segments);
+            Object newValue = StoreValues.valueAt(newRoot, segments);
+            // untouched subtrees are shared between roots, so identity means "not changed"
+            if (oldValue == newValue) {
+                return;
+            }
+            if (valueListener != null) {
+                try {
+                    valueListener.onValue(newValue);
+                } catch (RuntimeException e) {
+                    System.err.println("Store listener on " + path + " failed: " + e.getMessage());
+                }
+                return;
+            }
+
+            NavigableMap<String, Object> oldChildren = StoreValues.children(oldValue);
+            NavigableMap<String, Object> newChildren = StoreValues.children(newValue);
+            Set<String> keys = new TreeSet<>();
+            for (List<String> written : writtenPaths) {
+                String writtenPath = StoreValues.joinPath(written);
+                if (written.size() > segments.size() && StoreValues.isAncestorOrSelf(path, writtenPath)) {
+                    keys.add(written.get(segments.size()));
+                } else if (StoreValues.isAncestorOrSelf(writtenPath, path)) {
+                    keys.addAll(oldChildren.keySet());
+                    keys.addAll(newChildren.keySet());
+                }
+            }
+
+            for (String key : keys) {
+                Object before = oldChildren.get(key);
+                Object after = newChildren.get(key);
+                try {
+                    if (before == null && after != null) {
+                        childListener.onChildAdded(key, after);
+                    } else if (before != null && after == null) {
+                        childListener.onChildRemoved(key, before);
+                    } else if (before != after) {
+                        childListener.onChildChanged(key, after);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Store listener on " + path + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
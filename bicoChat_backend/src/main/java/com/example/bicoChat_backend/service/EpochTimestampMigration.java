@@ -0,0 +1,152 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.model.EpochMillisDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * One-shot migration to numeric timestamps, run at startup with bicochat.migration.epoch-timestamps=true.
+ *
+ * It rewrites the ISO string timestamps of messages and of users/{uid}/chatUser entries as epoch
+ * milliseconds, and re-keys the messages saved with legacy keys ("msg" + millis, random UUIDs) with
+ * time ordered ids, so key order is chronological order for old chats too. The ids that point at a
+ * re-keyed message (chatMeta/{chatId}/lastMessageId, users/{uid}/chatUser/{chatId}/lastReadMessageId)
+ * are rewritten in the same multi-path update as the move. The new id follows from the old key and the
+ * timestamp ({@link #rekeyedId}), so the live listeners can tell a move from a deletion.
+ * Chats and users are read a page at a time and each one is written with a single multi-path update.
+ * Running it twice is harmless: migrated data is left untouched.
+ */
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "bicochat.migration.epoch-timestamps", havingValue = "true")
+public class EpochTimestampMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(EpochTimestampMigration.class);
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int chats = migrateAll("chats", this::migrateChat);
+        int users = migrateAll("users", this::migrateUser);
+        firebaseService.getWriteBehindQueue().flush();
+        log.info("Epoch timestamp migration: {} chats and {} users updated in {} ms",
+                chats, users, System.currentTimeMillis() - start);
+    }
+
+    private interface NodeMigration {
+        /**
+         * @return the updates needed by the node, empty if it is already migrated
+         */
+        Map<String, Object> updatesFor(String key, Object node);
+    }
+
+    private int migrateAll(String root, NodeMigration migration) {
+        int migrated = 0;
+        String cursor = null;
+        NavigableMap<String, Object> page;
+        do {
+            page = firebaseService.getChildrenByKey(root, cursor, null, PAGE_SIZE, false).join();
+            for (Map.Entry<String, Object> node : page.entrySet()) {
+                Map<String, Object> updates = migration.updatesFor(node.getKey(), node.getValue());
+                if (!updates.isEmpty()) {
+                    firebaseService.updateMulti(updates).join();
+                    migrated++;
+                }
+            }
+            cursor = page.isEmpty() ? null : page.lastKey();
+        } while (page.size() == PAGE_SIZE);
+        return migrated;
+    }
+
+    private Map<String, Object> migrateChat(String chatId, Object chat) {
+        Map<String, Object> updates = new HashMap<>();
+        Map<String, String> rekeyed = new HashMap<>();
+        String messagesPath = "chats/" + chatId + "/messages/";
+        StoreValues.children(StoreValues.child(chat, "messages")).forEach((messageId, message) -> {
+            Object timestamp = StoreValues.child(message, "timestamp");
+            long millis = toMillis(timestamp);
+            if (!MessageIdGenerator.isTimeOrdered(messageId)) {
+                String newId = MessageIdGenerator.idFor(millis, messageId);
+                Map<String, Object> moved = new TreeMap<>(StoreValues.children(message));
+                moved.put("timestamp", millis);
+                updates.put(messagesPath + newId, moved);
+                updates.put(messagesPath + messageId, null);
+                rekeyed.put(messageId, newId);
+            } else if (!(timestamp instanceof Number)) {
+                updates.put(messagesPath + messageId + "/timestamp", millis);
+            }
+        });
+        if (!rekeyed.isEmpty()) {
+            updates.putAll(rewriteReferences(chatId, chat, rekeyed));
+        }
+        return updates;
+    }
+
+    /**
+     * Updates of the ids pointing at re-keyed messages of a chat. Read straight from the store: a
+     * one-off scan must not fill the path cache with listeners.
+     */
+    private Map<String, Object> rewriteReferences(String chatId, Object chat, Map<String, String> rekeyed) {
+        ChatStore chatStore = firebaseService.getChatStore();
+        Map<String, Object> updates = new HashMap<>();
+
+        String lastMessagePath = "chatMeta/" + chatId + "/lastMessageId";
+        String lastMessageId = chatStore.get(lastMessagePath, String.class).join();
+        if (rekeyed.containsKey(lastMessageId)) {
+            updates.put(lastMessagePath, rekeyed.get(lastMessageId));
+        }
+
+        for (Object participant : StoreValues.children(StoreValues.child(chat, "participants")).values()) {
+            if (participant == null) {
+                continue;
+            }
+            String lastReadPath = "users/" + participant + "/chatUser/" + chatId + "/lastReadMessageId";
+            String lastReadMessageId = chatStore.get(lastReadPath, String.class).join();
+            if (rekeyed.containsKey(lastReadMessageId)) {
+                updates.put(lastReadPath, rekeyed.get(lastReadMessageId));
+            }
+        }
+        return updates;
+    }
+
+    private Map<String, Object> migrateUser(String uid, Object user) {
+        Map<String, Object> updates = new HashMap<>();
+        StoreValues.children(StoreValues.child(user, "chatUser")).forEach((chatId, chatInfo) -> {
+            Object timestamp = StoreValues.child(chatInfo, "timestamp");
+            if (timestamp != null && !(timestamp instanceof Number)) {
+                updates.put("users/" + uid + "/chatUser/" + chatId + "/timestamp", toMillis(timestamp));
+            }
+        });
+        return updates;
+    }
+
+    /**
+     * Id a message stored under a legacy key gets from the migration, from its raw value
+     */
+    public static String rekeyedId(String legacyKey, Object rawMessage) {
+        return MessageIdGenerator.idFor(toMillis(StoreValues.child(rawMessage, "timestamp")), legacyKey);
+    }
+
+    private static long toMillis(Object timestamp) {
+        if (timestamp instanceof Number number) {
+            return number.longValue();
+        }
+        return EpochMillisDeserializer.parse(timestamp != null ? timestamp.toString() : null);
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.bicoChat_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-Sent Events for the clients that cannot keep a STOMP session: the same message and inbox
+ * events, on one long-lived HTTP response per stream ("chat:{chatId}", "inbox:{uid}").
+ *
+ * Every stream keeps its last events in a ring, with increasing ids: a client reconnecting with
+ * Last-Event-ID gets what it missed, or a "reset" event when the ring no longer covers it (reload
+ * through REST). Ids start from the creation time of the stream, so ids issued before a restart are
+ * recognized as too old. Each connection has a bounded buffer drained by the sender threads; a
+ * connection that falls behind is closed and resumes from its last event. A comment is sent as
+ * heartbeat to keep proxies from closing idle streams.
+ *
+ * Streams are created by the first subscriber and dropped a while after the last one leaves, so chats
+ * and users nobody follows cost nothing.
+ */
+@Service
+public class EventStreamHub {
+
+    public static final String RESET = "reset";
+
+    private static final Object HEARTBEAT = new Object();
+
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    private final int ringSize;
+    private final int connectionBuffer;
+    private final long timeoutMillis;
+    private final long retentionMillis;
+
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sse-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong eventsPublished = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    @Autowired
+    public EventStreamHub(@Value("${bicochat.stream.ring-size:256}") int ringSize,
+                          @Value("${bicochat.stream.connection-buffer:100}") int connectionBuffer,
+                          @Value("${bicochat.stream.heartbeat-ms:15000}") long heartbeatMillis,
+                          @Value("${bicochat.stream.timeout-ms:1800000}") long timeoutMillis,
+                          @Value("${bicochat.stream.retention-ms:300000}") long retentionMillis,
+                          @Value("${bicochat.stream.sender-threads:4}") int senderThreads) {
+        this.ringSize = ringSize;
+        this.connectionBuffer = connectionBuffer;
+        this.timeoutMillis = timeoutMillis;
+        this.retentionMillis = retentionMillis;
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static String chatStream(String chatId) {
+        return "chat:" + chatId;
+    }
+
+    public static String inboxStream(String uid) {
+        return "inbox:" + uid;
+    }
+
+    /**
+     * Open a connection to a stream
+     * @param lastEventId id of the last event the client received, null for a new client
+     */
+    public SseEmitter subscribe(String key, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Long resumeFrom = parseId(lastEventId);
+        Connection[] connection = new Connection[1];
+        // attached inside compute, so a stream being dropped for inactivity cannot swallow the connection
+        streams.compute(key, (k, stream) -> {
+            if (stream == null) {
+                stream = new Stream(k);
+            }
+            connection[0] = new Connection(stream, emitter);
+            stream.attach(connection[0], resumeFrom);
+            return stream;
+        });
+        emitter.onCompletion(connection[0]::close);
+        emitter.onTimeout(connection[0]::close);
+        emitter.onError(error -> connection[0].close());
+        return emitter;
+    }
+
+    /**
+     * Send an event to the connections of a stream, dropped if nobody follows it
+     */
+    public void publish(String key, String name, Object data) {
+        Stream stream = streams.get(key);
+        if (stream != null) {
+            eventsPublished.incrementAndGet();
+            stream.publish(name, data);
+        }
+    }
+
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    public int getConnectionCount() {
+        int count = 0;
+        for (Stream stream : streams.values()) {
+            count += stream.connectionCount();
+        }
+        return count;
+    }
+
+    public long getEventsPublished() {
+        return eventsPublished.get();
+    }
+
+    /**
+     * Connections closed because their buffer was full
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdown();
+        senders.shutdown();
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (String key : streams.keySet()) {
+            Stream stream = streams.computeIfPresent(key, (k, existing) -> existing.expired(now) ? null : existing);
+            if (stream != null) {
+                stream.heartbeat();
+            }
+        }
+    }
+
+    private static Long parseId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return -1L; // not one of our ids: treat it as too old
+        }
+    }
+
+    private record Event(long id, String name, Object data) {}
+
+    private final class Stream {
+        private final String key;
+        private final ArrayDeque<Event> ring = new ArrayDeque<>();
+        private final Set<Connection> connections = new HashSet<>();
+        private long lastId;
+        private long idleSince;
+
+        private Stream(String key) {
+            this.key = key;
+            this.lastId = System.currentTimeMillis() * 1000;
+            this.idleSince = System.currentTimeMillis();
+        }
+
+        private synchronized void attach(Connection connection, Long lastEventId) {
+            connections.add(connection);
+            if (lastEventId == null || lastEventId == lastId) {
+                return;
+            }
+            long oldest = ring.isEmpty() ? lastId + 1 : ring.peekFirst().id();
+            if (lastEventId < oldest - 1 || lastEventId > lastId) {
+                connection.offer(new Event(lastId, RESET, key));
+                return;
+            }
+            for (Event event : ring) {
+                if (event.id() > lastEventId) {
+                    connection.offer(event);
+                }
+            }
+        }
+
+        private synchronized void publish(String name, Object data) {
+            Event event = new Event(++lastId, name, data);
+            ring.addLast(event);
+            if (ring.size() > ringSize) {
+                ring.removeFirst();
+            }
+            for (Connection connection : new ArrayList<>(connections)) {
+                connection.offer(event);
+            }
+        }
+
+        private synchronized void heartbeat() {
+            for (Connection connection : new ArrayList<>(connections)) {
+                connection.offer(HEARTBEAT);
+            }
+        }
+
+        private synchronized void detach(Connection connection) {
+            if (connections.remove(connection) && connections.isEmpty()) {
+                idleSince = System.currentTimeMillis();
+            }
+        }
+
+        private synchronized int connectionCount() {
+            return connections.size();
+        }
+
+        private synchronized boolean expired(long now) {
+            return connections.isEmpty() && now - idleSince > retentionMillis;
+        }
+    }
+
+    private final class Connection {
+        private final Stream stream;
+        private final SseEmitter emitter;
+        // room for a full replay of the ring plus the live backlog
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(ringSize + connectionBuffer);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Connection(Stream stream, SseEmitter emitter) {
+            this.stream = stream;
+            this.emitter = emitter;
+        }
+
+        private void offer(Object item) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(item)) {
+                // too far behind: the client reconnects and resumes from its Last-Event-ID
+                overflows.incrementAndGet();
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Object item;
+                while (!closed && (item = queue.poll()) != null) {
+                    send(item);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void send(Object item) throws IOException {
+            if (item == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+                return;
+            }
+            Event event = (Event) item;
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(event.id()))
+                    .name(event.name())
+                    .data(event.data(), MediaType.APPLICATION_JSON));
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            stream.detach(this);
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // already completed
+            }
+        }
+    }
+}
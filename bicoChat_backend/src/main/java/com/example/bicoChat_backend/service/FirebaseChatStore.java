@@ -0,0 +1,244 @@
+package com.example.bicoChat_backend.service;
+
+import com.google.firebase.database.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link ChatStore} backed by the Firebase Realtime Database (default backend)
+ */
+@Service
+@ConditionalOnProperty(name = "bicochat.store", havingValue = "firebase", matchIfMissing = true)
+public class FirebaseChatStore implements ChatStore {
+
+    private final DatabaseReference databaseReference;
+
+    @Autowired
+    public FirebaseChatStore(DatabaseReference databaseReference) {
+        this.databaseReference = databaseReference;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String path, Class<T> valueType) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                try {
+                    // Object.class asks for the raw tree (maps, lists and primitives)
+                    future.complete(valueType == Object.class
+                            ? valueType.cast(dataSnapshot.getValue())
+                            : dataSnapshot.getValue(valueType));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                future.completeExceptionally(error.toException());
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getWithTypeIndicator(String path, GenericTypeIndicator<T> typeIndicator) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                try {
+                    future.complete(dataSnapshot.getValue(typeIndicator));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                future.completeExceptionally(error.toException());
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String path) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                future.complete(dataSnapshot.exists());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                future.completeExceptionally(error.toException());
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<NavigableMap<String, Object>> getChildrenByKey(String path, String startAfter, String endBefore,
+                                                                            int limit, boolean fromEnd) {
+        CompletableFuture<NavigableMap<String, Object>> future = new CompletableFuture<>();
+
+        // startAt/endAt are inclusive: ask for the cursors too and drop them afterwards
+        Query query = databaseReference.child(path).orderByKey();
+        int fetch = limit;
+        if (startAfter != null) {
+            query = query.startAt(startAfter);
+            fetch++;
+        }
+        if (endBefore != null) {
+            query = query.endAt(endBefore);
+            fetch++;
+        }
+        query = fromEnd ? query.limitToLast(fetch) : query.limitToFirst(fetch);
+
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                NavigableMap<String, Object> children = new TreeMap<>();
+                for (DataSnapshot child : dataSnapshot.getChildren()) {
+                    String key = child.getKey();
+                    if (!key.equals(startAfter) && !key.equals(endBefore)) {
+                        children.put(key, child.getValue());
+                    }
+                }
+                while (children.size() > limit) {
+                    if (fromEnd) {
+                        children.pollFirstEntry();
+                    } else {
+                        children.pollLastEntry();
+                    }
+                }
+                future.complete(children);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                future.completeExceptionally(error.toException());
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Object value) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(path).setValue(value, (error, ref) -> complete(future, error));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> updates) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(path).updateChildren(updates, (error, ref) -> complete(future, error));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> updateMulti(Map<String, Object> updates) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.updateChildren(updates, (error, ref) -> complete(future, error));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        databaseReference.child(path).runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData currentData) {
+                currentData.setValue(update.apply(currentData.getValue()));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+                if (error != null) {
+                    future.completeExceptionally(error.toException());
+                } else if (!committed) {
+                    future.completeExceptionally(new IllegalStateException("Transaction on " + path + " not committed"));
+                } else {
+                    future.complete(currentData.getValue());
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public Registration addChildListener(String path, ChildListener listener) {
+        DatabaseReference ref = databaseReference.child(path);
+        ChildEventListener firebaseListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                listener.onChildAdded(snapshot.getKey(), snapshot.getValue());
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                listener.onChildChanged(snapshot.getKey(), snapshot.getValue());
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                listener.onChildRemoved(snapshot.getKey(), snapshot.getValue());
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {}
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                listener.onCancelled(error.toException());
+            }
+        };
+        ref.addChildEventListener(firebaseListener);
+        return () -> ref.removeEventListener(firebaseListener);
+    }
+
+    @Override
+    public Registration addValueListener(String path, ValueListener listener) {
+        DatabaseReference ref = databaseReference.child(path);
+        ValueEventListener firebaseListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                listener.onValue(snapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                listener.onCancelled(error.toException());
+            }
+        };
+        ref.addValueEventListener(firebaseListener);
+        return () -> ref.removeEventListener(firebaseListener);
+    }
+
+    private static void complete(CompletableFuture<Void> future, DatabaseError error) {
+        if (error != null) {
+            future.completeExceptionally(error.toException());
+        } else {
+            future.complete(null);
+        }
+    }
+}
@@ -1,71 +1,122 @@
 package com.example.bicoChat_backend.service;
 
-import com.google.firebase.database.*;
+import com.google.firebase.database.GenericTypeIndicator;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entry point of every service to the store: writes are coalesced by the write-behind queue,
+ * reads are served by the path cache or coalesced by single-flight, and every operation that
+ * reaches the store goes through a bulkhead (reads, writes and listener callbacks each have their
+ * own; reads and writes also have a deadline, listener callbacks are never dropped).
+ */
 @Service
 public class FirebaseService {
 
-    private final DatabaseReference databaseReference;
+    private final ChatStore chatStore;
+
+    private final WriteBehindQueue writeBehindQueue;
+
+    private final PathCache pathCache;
+
+    private final SingleFlight<Object> singleFlightReads = new SingleFlight<>();
+
+    private final Bulkhead readBulkhead;
+
+    private final Bulkhead writeBulkhead;
+
+    private final Bulkhead listenerBulkhead;
 
     @Autowired
-    public FirebaseService(DatabaseReference databaseReference) {
-        this.databaseReference = databaseReference;
+    public FirebaseService(ChatStore chatStore,
+                           @Qualifier("readBulkhead") Bulkhead readBulkhead,
+                           @Qualifier("writeBulkhead") Bulkhead writeBulkhead,
+                           @Qualifier("listenerBulkhead") Bulkhead listenerBulkhead,
+                           @Value("${bicochat.store.write-behind.window-ms:5}") long writeBehindWindowMs,
+                           @Value("${bicochat.store.write-behind.max-batch:500}") int writeBehindMaxBatch,
+                           @Value("${bicochat.cache.max-entries:10000}") int cacheMaxEntries,
+                           @Value("${bicochat.cache.max-weight-bytes:67108864}") long cacheMaxWeight,
+                           @Value("${bicochat.cache.min-depth:2}") int cacheMinDepth) {
+        this.chatStore = chatStore;
+        this.readBulkhead = readBulkhead;
+        this.writeBulkhead = writeBulkhead;
+        this.listenerBulkhead = listenerBulkhead;
+        this.pathCache = new PathCache(chatStore, cacheMaxEntries, cacheMaxWeight, cacheMinDepth);
+        this.writeBehindQueue = new WriteBehindQueue(chatStore, writeBehindWindowMs, writeBehindMaxBatch,
+                pathCache::applyWrites);
     }
 
-    public DatabaseReference getDatabaseReference() {
-        return databaseReference;
+    public ChatStore getChatStore() {
+        return chatStore;
+    }
+
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    public SingleFlight<Object> getSingleFlightReads() {
+        return singleFlightReads;
+    }
+
+    public List<Bulkhead> getBulkheads() {
+        return List.of(readBulkhead, writeBulkhead, listenerBulkhead);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeBehindQueue.shutdown();
     }
 
 
     /**
-     * Get data from Firebase at the specified path and convert to the given type
+     * Get data from Firebase at the specified path and convert to the given type.
+     * Paths deep enough to be cached (e.g. users/{uid}, chats/{chatId}) are served from the path cache.
      * @param path Firebase database path
      * @param valueType Class to convert the data to
      * @param <T> Type parameter
      * @return CompletableFuture with the result
      */
     public <T> CompletableFuture<T> get(String path, Class<T> valueType) {
-        CompletableFuture<T> future = new CompletableFuture<>();
-
-        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                future.complete(dataSnapshot.getValue(valueType));
-            }
-
-            @Override
-            public void onCancelled(DatabaseError error) {
-                future.completeExceptionally(error.toException());
-            }
-        });
+        return readRaw(path).thenApply(raw -> StoreValues.convert(raw, valueType));
+    }
 
-        return future;
+    /**
+     * Like {@link #get}, but never through the path cache: for one-off reads that must not leave a cache
+     * entry and its listener behind. Concurrent reads of the same path still share one round trip.
+     */
+    public <T> CompletableFuture<T> getUncached(String path, Class<T> valueType) {
+        return readUncached(path).thenApply(raw -> StoreValues.convert(raw, valueType));
     }
 
     /**
-     * Set data in Firebase at the specified path
+     * Set data in Firebase at the specified path.
+     * The write goes through the write-behind queue and is flushed together with the other
+     * mutations of the same window.
      * @param path Firebase database path
      * @param value Value to set
      * @param <T> Type parameter
-     * @return CompletableFuture that completes when the operation is done
+     * @return CompletableFuture that completes when the batch containing the write is acknowledged
      */
     public <T> CompletableFuture<Void> set(String path, T value) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-
-        databaseReference.child(path).setValue(value, (error, ref) -> {
-            if (error != null) {
-                future.completeExceptionally(error.toException());
-            } else {
-                future.complete(null);
-            }
-        });
-
-        return future;
+        Map<String, Object> writes = new HashMap<>();
+        writes.put(path, value);
+        return submitWrites(writes);
     }
 
     /**
@@ -74,47 +125,40 @@ public class FirebaseService {
      * @return CompletableFuture with boolean result
      */
     public CompletableFuture<Boolean> exists(String path) {
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                future.complete(dataSnapshot.exists());
-            }
-
-            @Override
-            public void onCancelled(DatabaseError error) {
-                future.completeExceptionally(error.toException());
-            }
-        });
-
-        return future;
+        return readRaw(path).thenApply(raw -> raw != null);
     }
 
     /**
      * Update specific fields at the given path
      * @param path Firebase database path
      * @param updates Map of updates to apply
-     * @return CompletableFuture that completes when the operation is done
+     * @return CompletableFuture that completes when the batch containing the update is acknowledged
      */
     public CompletableFuture<Void> update(String path, Map<String, Object> updates) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-
-        databaseReference.child(path).updateChildren(updates, (error, ref) -> {
-            if (error != null) {
-                future.completeExceptionally(error.toException());
-            } else {
-                future.complete(null);
-            }
-        });
+        Map<String, Object> writes = new HashMap<>();
+        updates.forEach((child, value) -> writes.put(path + "/" + child, value));
+        return submitWrites(writes);
+    }
 
-        return future;
+    /**
+     * Compare-and-set of the value at path, straight to the store (not through the write-behind queue):
+     * see {@link ChatStore#transaction}
+     * @return CompletableFuture with the committed raw value
+     */
+    public CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update) {
+        return writeBulkhead.submit(() -> chatStore.transaction(path, update))
+                .thenApply(committed -> {
+                    Map<String, Object> writes = new HashMap<>();
+                    writes.put(path, committed);
+                    pathCache.applyWrites(writes);
+                    return committed;
+                });
     }
 
     /**
      * Delete data at the specified path
      * @param path Firebase database path
-     * @return CompletableFuture that completes when the operation is done
+     * @return CompletableFuture that completes when the batch containing the delete is acknowledged
      */
     public CompletableFuture<Void> delete(String path) {
         return set(path, null);
@@ -128,43 +172,161 @@ public class FirebaseService {
      * @return CompletableFuture with the result
      */
     public <T> CompletableFuture<T> getWithTypeIndicator(String path, GenericTypeIndicator<T> typeIndicator) {
-        CompletableFuture<T> future = new CompletableFuture<>();
+        return readRaw(path).thenApply(raw -> StoreValues.convert(raw, typeIndicator));
+    }
 
-        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+    /**
+     * Read a window of children ordered by key, without downloading the whole node
+     * @param path Firebase database path of the parent node
+     * @param startAfter exclusive lower bound on the child key, null for no bound
+     * @param endBefore exclusive upper bound on the child key, null for no bound
+     * @param limit maximum number of children
+     * @param fromEnd true for the last children of the window (limitToLast), false for the first ones
+     * @return CompletableFuture with the raw children ordered by key
+     */
+    public CompletableFuture<NavigableMap<String, Object>> getChildrenByKey(String path, String startAfter, String endBefore,
+                                                                            int limit, boolean fromEnd) {
+        return readBulkhead.submit(() -> chatStore.getChildrenByKey(path, startAfter, endBefore, limit, fromEnd));
+    }
+
+    public CompletableFuture<Void> updateMulti(Map<String, Object> updates) {
+        // Aggiorna più percorsi simultaneamente: gli aggiornamenti finiscono sempre nello stesso batch
+        return submitWrites(updates);
+    }
+
+    /**
+     * Multi-path update built only once the write bulkhead admits it, and built and queued under lock:
+     * updates built under the same lock reach the store in the order they were built, whatever order
+     * the bulkhead admits them in (see {@link ChatSequencer}).
+     * The deadline of the write bulkhead only covers the wait for admission: once queued, the update
+     * reaches the store anyway, so the future follows the write itself instead of failing with a
+     * timeout that would hide a write that went through.
+     */
+    public CompletableFuture<Void> updateMultiInOrder(Object lock, Supplier<Map<String, Object>> updates) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        writeBulkhead.submit(() -> {
+            synchronized (lock) {
+                if (!settled.compareAndSet(false, true)) {
+                    // the caller already failed: nothing is written
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                CompletableFuture<Void> write;
+                try {
+                    write = writeBehindQueue.submit(updates.get());
+                } catch (RuntimeException e) {
+                    write = CompletableFuture.failedFuture(e);
+                }
+                write.whenComplete((v, error) -> {
+                    if (error != null) {
+                        written.completeExceptionally(error);
+                    } else {
+                        written.complete(null);
+                    }
+                });
+                return write;
+            }
+        }).whenComplete((v, error) -> {
+            if (error != null && settled.compareAndSet(false, true)) {
+                written.completeExceptionally(error);
+            }
+        });
+        return written;
+    }
+
+    private CompletableFuture<Void> submitWrites(Map<String, Object> writes) {
+        return writeBulkhead.submit(() -> writeBehindQueue.submit(writes));
+    }
+
+    /**
+     * Raw value at path. Cacheable paths are served by the path cache (which already shares one
+     * listener between concurrent misses), the others go through single-flight so concurrent reads
+     * of the same path share one round trip. Each caller converts the shared raw value on its own,
+     * so nobody sees objects mutated by another caller.
+     * Cache hits answer at once; misses and single-flight leaders take a read permit.
+     */
+    private CompletableFuture<Object> readRaw(String path) {
+        if (pathCache.accepts(path)) {
+            CompletableFuture<Object> cached = pathCache.getIfCached(path);
+            if (cached != null) {
+                return cached;
+            }
+            return readBulkhead.submit(() -> pathCache.get(path));
+        }
+        return readUncached(path);
+    }
+
+    private CompletableFuture<Object> readUncached(String path) {
+        String key = StoreValues.normalizePath(path);
+        return singleFlightReads.execute(key, () -> readBulkhead.submit(
+                () -> chatStore.get(key, Object.class).thenApply(StoreValues::toRaw)));
+    }
+
+    /**
+     * Listen to the children of the node at the given path
+     * @param path Firebase database path
+     * @param listener callback receiving added/changed/removed children
+     * @return handle used to stop listening
+     */
+    public ChatStore.Registration addChildListener(String path, ChatStore.ChildListener listener) {
+        return chatStore.addChildListener(path, new ChatStore.ChildListener() {
             @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                T value = dataSnapshot.getValue(typeIndicator);
-                future.complete(value);
+            public void onChildAdded(String key, Object value) {
+                dispatch(path, () -> listener.onChildAdded(key, value));
             }
 
             @Override
-            public void onCancelled(DatabaseError error) {
-                future.completeExceptionally(error.toException());
+            public void onChildChanged(String key, Object value) {
+                dispatch(path, () -> listener.onChildChanged(key, value));
+            }
+
+            @Override
+            public void onChildRemoved(String key, Object value) {
+                dispatch(path, () -> listener.onChildRemoved(key, value));
             }
-        });
 
-        return future;
+            @Override
+            public void onCancelled(Exception error) {
+                dispatch(path, () -> listener.onCancelled(error));
+            }
+        });
     }
 
-    public CompletableFuture<Void> updateMulti(Map<String, Object> updates) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
+    /**
+     * Listen to the whole value of the node at the given path
+     * @param path Firebase database path
+     * @param listener callback receiving the new value
+     * @return handle used to stop listening
+     */
+    public ChatStore.Registration addValueListener(String path, ChatStore.ValueListener listener) {
+        return chatStore.addValueListener(path, new ChatStore.ValueListener() {
+            @Override
+            public void onValue(Object value) {
+                dispatch(path, () -> listener.onValue(value));
+            }
 
-        // Utilizziamo il metodo updateChildren che aggiorna più percorsi simultaneamente
-        databaseReference.updateChildren(updates, (error, ref) -> {
-            if (error != null) {
-                future.completeExceptionally(error.toException());
-            } else {
-                future.complete(null);
+            @Override
+            public void onCancelled(Exception error) {
+                dispatch(path, () -> listener.onCancelled(error));
             }
         });
-
-        return future;
     }
 
+    public ChatStore.Registration listenToUsersChanges(ChatStore.ValueListener listener) {
+        return addValueListener("users", listener);
+    }
 
-
-    public void listenToUsersChanges(ValueEventListener listener) {
-        databaseReference.child("users").addValueEventListener(listener);
+    /**
+     * Run a listener callback on the listener bulkhead, off the store event thread. The bulkhead never
+     * rejects or times out: with its queue full the event thread waits here for room. The only failure
+     * is the callback throwing.
+     */
+    private void dispatch(String path, Runnable callback) {
+        listenerBulkhead.executeWaiting(callback).whenComplete((v, error) -> {
+            if (error != null) {
+                System.err.println("Listener on " + path + " failed: " + error.getMessage());
+            }
+        });
     }
 
-}
\ No newline at end of file
+}
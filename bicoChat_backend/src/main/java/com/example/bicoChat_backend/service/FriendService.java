@@ -1,7 +1,7 @@
 package com.example.bicoChat_backend.service;
 
 import com.example.bicoChat_backend.dto.response.FriendResponseDTO;
-import com.example.bicoChat_backend.model.User;
+import com.example.bicoChat_backend.model.UserProfile;
 import com.google.firebase.database.GenericTypeIndicator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -20,6 +20,9 @@ public class FriendService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ProfileLoader profileLoader;
+
     // ✅ Recupera tutti gli amici con stato "active", "pending", ecc.
     public CompletableFuture<List<FriendResponseDTO>> getFriendsOfUser(String uid) {
         String path = "users/" + uid + "/friends";
@@ -31,24 +34,16 @@ public class FriendService {
                         return CompletableFuture.completedFuture(new ArrayList<FriendResponseDTO>());
                     }
 
-                    List<CompletableFuture<Optional<User>>> futureUsers = new ArrayList<>();
-                    Map<String, String> finalMap = friendMap;
-
-                    for (String friendId : finalMap.keySet()) {
-                        futureUsers.add(
-                                firebaseService.get("users/" + friendId, User.class).thenApply(Optional::ofNullable)
-                        );
-                    }
-
-                    return CompletableFuture.allOf(futureUsers.toArray(new CompletableFuture[0]))
-                            .thenApply(v -> {
+                    // profili letti in blocco (username, email, avatar), non l'intero utente di ogni amico
+                    return profileLoader.loadAll(friendMap.keySet())
+                            .thenApply(profiles -> {
                                 List<FriendResponseDTO> result = new ArrayList<>();
-                                int i = 0;
-                                for (String friendId : finalMap.keySet()) {
-                                    String status = finalMap.get(friendId);
-                                    Optional<User> maybeUser = futureUsers.get(i++).join();
-                                    maybeUser.ifPresent(user -> result.add(new FriendResponseDTO(friendId, user, status)));
-                                }
+                                friendMap.forEach((friendId, status) -> {
+                                    UserProfile profile = profiles.get(friendId);
+                                    if (profile != null) {
+                                        result.add(new FriendResponseDTO(friendId, profile, status));
+                                    }
+                                });
                                 return result;
                             });
                 })
@@ -91,24 +86,13 @@ public class FriendService {
                         return CompletableFuture.completedFuture(Collections.emptyList());
                     }
 
-                    List<CompletableFuture<Optional<User>>> userFutures = new ArrayList<>();
-                    Map<String, String> finalMap = requestMap;
-
-                    for (String fromUid : finalMap.keySet()) {
-                        CompletableFuture<Optional<User>> userFuture =
-                                firebaseService.get("users/" + fromUid, User.class)
-                                        .thenApply(Optional::ofNullable);
-                        userFutures.add(userFuture);
-                    }
-
-                    return CompletableFuture.allOf(userFutures.toArray(new CompletableFuture[0]))
-                            .thenApply(v -> {
+                    return profileLoader.loadAll(requestMap.keySet())
+                            .thenApply(profiles -> {
                                 List<FriendResponseDTO> pendingRequests = new ArrayList<>();
-                                int i = 0;
-                                for (String fromUid : finalMap.keySet()) {
-                                    Optional<User> maybeUser = userFutures.get(i++).join();
-                                    if (maybeUser.isPresent()) {
-                                        pendingRequests.add(new FriendResponseDTO(fromUid, maybeUser.get(), "pending"));
+                                for (String fromUid : requestMap.keySet()) {
+                                    UserProfile profile = profiles.get(fromUid);
+                                    if (profile != null) {
+                                        pendingRequests.add(new FriendResponseDTO(fromUid, profile, "pending"));
                                     }
                                 }
                                 return pendingRequests;
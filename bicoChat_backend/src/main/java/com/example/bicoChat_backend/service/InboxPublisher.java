@@ -0,0 +1,77 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.InboxEvent;
+import com.example.bicoChat_backend.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns changes under users/ into per user updates on /user/queue/inbox (and the inbox event stream).
+ *
+ * The last seen value of every user is kept, so a change is diffed instead of re-sent: the owner gets
+ * only the chatUser entries that changed, and the active friends of the user get a presence event
+ * only when the status actually changes.
+ */
+@Service
+public class InboxPublisher {
+
+    public static final String INBOX = "/queue/inbox";
+
+    @Autowired
+    private BroadcastScheduler broadcastScheduler;
+
+    @Autowired
+    private EventStreamHub eventStreamHub;
+
+    private final Map<String, Object> lastSeen = new ConcurrentHashMap<>();
+
+    /**
+     * Remember a user without pushing anything (existing users replayed at startup, new users)
+     */
+    public void userAdded(String uid, Object rawUser) {
+        lastSeen.put(uid, rawUser);
+    }
+
+    public void userChanged(String uid, Object rawUser) {
+        Object previous = lastSeen.put(uid, rawUser);
+
+        NavigableMap<String, Object> oldChats = StoreValues.children(StoreValues.child(previous, "chatUser"));
+        NavigableMap<String, Object> newChats = StoreValues.children(StoreValues.child(rawUser, "chatUser"));
+        newChats.forEach((chatId, rawChat) -> {
+            if (!Objects.equals(oldChats.get(chatId), rawChat)) {
+                sendTo(uid, InboxEvent.chat(chatId, StoreValues.convert(rawChat, User.ChatInfo.class)));
+            }
+        });
+        for (String chatId : oldChats.keySet()) {
+            if (!newChats.containsKey(chatId)) {
+                sendTo(uid, InboxEvent.chatRemoved(chatId));
+            }
+        }
+
+        Object oldStatus = StoreValues.child(previous, "status");
+        Object newStatus = StoreValues.child(rawUser, "status");
+        if (previous != null && !Objects.equals(oldStatus, newStatus)) {
+            InboxEvent presence = InboxEvent.presence(uid, newStatus != null ? newStatus.toString() : null);
+            StoreValues.children(StoreValues.child(rawUser, "friends")).forEach((friendId, friendship) -> {
+                if ("active".equals(friendship)) {
+                    sendTo(friendId, presence);
+                }
+            });
+        }
+    }
+
+    public void userRemoved(String uid) {
+        lastSeen.remove(uid);
+    }
+
+    private void sendTo(String uid, InboxEvent event) {
+        // same destination convertAndSendToUser would build
+        broadcastScheduler.publish("/user/" + uid + INBOX, event);
+        eventStreamHub.publish(EventStreamHub.inboxStream(uid), event.getType(), event);
+    }
+}
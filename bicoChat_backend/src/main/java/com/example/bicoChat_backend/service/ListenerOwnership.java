@@ -0,0 +1,128 @@
+package com.example.bicoChat_backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Which store listeners publish on this instance when several instances share a broker relay.
+ *
+ * Every instance receives every store event, so without a rule each broadcast would leave once per
+ * instance. Keys (chat ids, user ids) are partitioned by hash over bicochat.cluster.instance-count:
+ * an instance publishes the message events of the chats it owns and the inbox updates of the users
+ * it owns, and instance 0 publishes the global chat list. With a single instance it owns everything.
+ *
+ * The owner of a chat is also the only instance that stores its messages (the seqs come from a counter
+ * in its memory): the others forward sends to bicochat.cluster.instance-urls[owner], with the shared
+ * bicochat.cluster.secret. Both are required with more than one instance.
+ *
+ * Ownership is static, with no leases: an instance that goes down is not replaced by the others, which
+ * would need to agree that it is gone (a slow or partitioned owner still writing alongside a new one
+ * would number the same seqs twice). Failover is restarting an instance with the same index and URL, as
+ * an orchestrator does for a StatefulSet pod. Until then:
+ * - sends to its chats fail with {@link StoreUnavailableException} (503) on every other instance, and
+ *   nothing is stored, so the client can retry them with the same clientRef;
+ * - the events of its chats and users are not published; clients catch up when the replacement comes
+ *   up, since its events start a new epoch.
+ * The replacement starts numbering from chatMeta/{chatId}/lastSeq, written with every message, so it
+ * continues the seqs of the chats it takes over (see {@link ChatSequencer}).
+ */
+@Component
+public class ListenerOwnership {
+
+    private final int instanceIndex;
+    private final int instanceCount;
+    private final List<String> instanceUrls;
+    private final String secret;
+
+    /**
+     * Position only, for tests and tools that never forward
+     */
+    public ListenerOwnership(int instanceIndex, int instanceCount) {
+        this(instanceIndex, instanceCount, Collections.nCopies(instanceCount, "http://localhost"), "unused");
+    }
+
+    @Autowired
+    public ListenerOwnership(@Value("${bicochat.cluster.instance-index:0}") int instanceIndex,
+                             @Value("${bicochat.cluster.instance-count:1}") int instanceCount,
+                             @Value("${bicochat.cluster.instance-urls:}") List<String> instanceUrls,
+                             @Value("${bicochat.cluster.secret:}") String secret) {
+        if (instanceCount < 1 || instanceIndex < 0 || instanceIndex >= instanceCount) {
+            throw new IllegalStateException("Invalid cluster position " + instanceIndex + " of " + instanceCount);
+        }
+        List<String> urls = instanceUrls.stream().map(String::trim).filter(url -> !url.isEmpty())
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .toList();
+        if (instanceCount > 1 && urls.size() != instanceCount) {
+            throw new IllegalStateException("bicochat.cluster.instance-urls needs one URL per instance ("
+                    + instanceCount + "), got " + urls.size());
+        }
+        if (instanceCount > 1 && secret.isBlank()) {
+            throw new IllegalStateException("bicochat.cluster.secret is required with more than one instance");
+        }
+        this.instanceIndex = instanceIndex;
+        this.instanceCount = instanceCount;
+        this.instanceUrls = urls;
+        this.secret = secret;
+    }
+
+    /**
+     * True if this instance publishes the events of key (a chat id or a user id)
+     */
+    public boolean owns(String key) {
+        return instanceCount == 1 || ownerOf(key) == instanceIndex;
+    }
+
+    /**
+     * Index of the instance that owns key
+     */
+    public int ownerOf(String key) {
+        return instanceCount == 1 ? instanceIndex : Math.floorMod(key.hashCode(), instanceCount);
+    }
+
+    /**
+     * Base URL of the instance that owns key, null if this instance owns it
+     */
+    public String ownerUrl(String key) {
+        return owns(key) ? null : instanceUrls.get(ownerOf(key));
+    }
+
+    /**
+     * Base URL of the instance that publishes the events not tied to a key (instance 0)
+     */
+    public String globalOwnerUrl() {
+        return instanceUrls.isEmpty() ? "" : instanceUrls.get(0);
+    }
+
+    /**
+     * True if secret is the shared secret of the cluster (never true when none is configured)
+     */
+    public boolean isClusterSecret(String candidate) {
+        return !secret.isEmpty() && candidate != null
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    /**
+     * True if this instance publishes the events that are not tied to a key (the chat list)
+     */
+    public boolean ownsGlobal() {
+        return instanceIndex == 0;
+    }
+
+    public int getInstanceIndex() {
+        return instanceIndex;
+    }
+
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+}
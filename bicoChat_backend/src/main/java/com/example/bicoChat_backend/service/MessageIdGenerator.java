@@ -0,0 +1,107 @@
+package com.example.bicoChat_backend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time ordered, collision free ids in the style of Firebase push ids.
+ *
+ * An id is 11 characters of (epoch millis << 20 | counter) followed by 8 characters identifying this
+ * process, encoded with an alphabet whose characters are in ASCII order. Sorting ids as strings
+ * therefore sorts them by creation time, and ids created in the same millisecond differ by the counter.
+ * The counter is advanced with a CAS loop, so no lock is taken.
+ */
+@Component
+public class MessageIdGenerator {
+
+    static final String ALPHABET = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    private static final int COUNTER_BITS = 20;
+    private static final int TIME_CHARS = 11;
+    private static final int NODE_CHARS = 8;
+
+    private final AtomicLong lastValue = new AtomicLong();
+    private final String nodeSuffix;
+
+    public MessageIdGenerator() {
+        SecureRandom random = new SecureRandom();
+        StringBuilder suffix = new StringBuilder(NODE_CHARS);
+        for (int i = 0; i < NODE_CHARS; i++) {
+            suffix.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        this.nodeSuffix = suffix.toString();
+    }
+
+    /**
+     * Next id, strictly greater than every id previously returned by this generator
+     */
+    public String nextId() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        // same millisecond (or clock going back): bump the counter of the last value
+        long value = lastValue.updateAndGet(last -> Math.max(now, last + 1));
+        return encode(value) + nodeSuffix;
+    }
+
+    /**
+     * Smallest id that can be generated at the given time: use it as a range bound to query
+     * messages by time (every message created at or after epochMillis has a greater or equal key)
+     */
+    public static String lowerBoundFor(long epochMillis) {
+        return encode(epochMillis << COUNTER_BITS);
+    }
+
+    /**
+     * Deterministic id for a message created before this generator existed, ordered by its original
+     * time; the legacy key only decides the order within the same millisecond
+     * @param epochMillis original creation time of the message
+     * @param legacyKey original key of the message
+     */
+    public static String idFor(long epochMillis, String legacyKey) {
+        int hash = legacyKey.hashCode();
+        long value = (epochMillis << COUNTER_BITS) | (hash & ((1L << COUNTER_BITS) - 1));
+        StringBuilder suffix = new StringBuilder(NODE_CHARS);
+        long seed = ((long) hash << 32) ^ legacyKey.length();
+        for (int i = 0; i < NODE_CHARS; i++) {
+            suffix.append(ALPHABET.charAt((int) (seed & 63)));
+            seed >>>= 6;
+        }
+        return encode(value) + suffix;
+    }
+
+    /**
+     * True if the id has the shape of the ids produced by this generator
+     */
+    public static boolean isTimeOrdered(String id) {
+        if (id == null || id.length() != TIME_CHARS + NODE_CHARS) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (ALPHABET.indexOf(id.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creation time encoded in an id produced by this generator
+     */
+    public static long timestampOf(String id) {
+        long value = 0;
+        for (int i = 0; i < TIME_CHARS; i++) {
+            value = (value << 6) | ALPHABET.indexOf(id.charAt(i));
+        }
+        return value >>> COUNTER_BITS;
+    }
+
+    private static String encode(long value) {
+        char[] chars = new char[TIME_CHARS];
+        for (int i = TIME_CHARS - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (value & 63));
+            value >>>= 6;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.SendReceipt;
+import com.example.bicoChat_backend.model.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where sends are stored: the owner of the chat stores them through {@link ChatService#addMessage}
+ * (its {@link ChatSequencer} is the only one numbering the chat), any other instance forwards them to
+ * the owner's internal endpoint and relays its receipt.
+ *
+ * A send that timed out for the client (504, a dropped connection) may still be stored, so the owner
+ * remembers the sends carrying a clientRef for a while: a retry with the same sender and clientRef gets
+ * the receipt of the first attempt instead of storing the message twice. Only attempts that stored
+ * nothing (rejected, unknown chat, failed write) are forgotten at once, so their retry stores anew.
+ */
+@Service
+public class MessageRouter {
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private final ChatService chatService;
+    private final ListenerOwnership listenerOwnership;
+    private final ObjectMapper objectMapper;
+    private final long forwardTimeoutMs;
+
+    private final long dedupTtlMs;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    private record SendKey(String sender, String clientRef) {}
+
+    private record RecentSend(long startedAt, CompletableFuture<SendReceipt> receipt) {}
+
+    private final Map<SendKey, RecentSend> recentSends = new ConcurrentHashMap<>();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "send-dedup-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public MessageRouter(ChatService chatService, ListenerOwnership listenerOwnership, ObjectMapper objectMapper,
+                         @Value("${bicochat.cluster.forward-timeout-ms:10000}") long forwardTimeoutMs,
+                         @Value("${bicochat.send.dedup-ttl-ms:300000}") long dedupTtlMs) {
+        this.chatService = chatService;
+        this.listenerOwnership = listenerOwnership;
+        this.objectMapper = objectMapper;
+        this.forwardTimeoutMs = forwardTimeoutMs;
+        this.dedupTtlMs = dedupTtlMs;
+        long sweepMillis = Math.max(1000, dedupTtlMs / 4);
+        scheduler.scheduleAtFixedRate(this::expire, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Store message in chatId, here or on the owner of the chat
+     * @return the receipt of the stored message; fails with IllegalArgumentException when the chat is
+     *         unknown, StoreUnavailableException when the store or the owner cannot take it
+     */
+    public CompletableFuture<SendReceipt> send(String chatId, Message message, String clientRef) {
+        String ownerUrl = listenerOwnership.ownerUrl(chatId);
+        return ownerUrl == null ? sendLocally(chatId, message, clientRef) : forward(ownerUrl, chatId, message, clientRef);
+    }
+
+    /**
+     * Store message on this instance, which must own the chat. A repeated (sender, clientRef) gets the
+     * receipt of the first attempt, pending or not.
+     */
+    public CompletableFuture<SendReceipt> sendLocally(String chatId, Message message, String clientRef) {
+        if (clientRef == null || dedupTtlMs <= 0) {
+            return store(chatId, message, clientRef);
+        }
+        SendKey key = new SendKey(message.getSender(), clientRef);
+        RecentSend attempt = new RecentSend(System.currentTimeMillis(), new CompletableFuture<>());
+        RecentSend previous = recentSends.putIfAbsent(key, attempt);
+        if (previous != null) {
+            duplicates.incrementAndGet();
+            return previous.receipt();
+        }
+        store(chatId, message, clientRef).whenComplete((receipt, error) -> {
+            if (error != null) {
+                recentSends.remove(key, attempt);
+                attempt.receipt().completeExceptionally(error);
+            } else {
+                attempt.receipt().complete(receipt);
+            }
+        });
+        return attempt.receipt();
+    }
+
+    /**
+     * Retries answered with the receipt of an earlier attempt
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    private CompletableFuture<SendReceipt> store(String chatId, Message message, String clientRef) {
+        return chatService.addMessage(chatId, message)
+                .thenApply(sent -> SendReceipt.sent(clientRef, chatId, sent.getKey(), sent.getValue().getSeq(),
+                        sent.getValue().getTimestamp()));
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - dedupTtlMs;
+        recentSends.values().removeIf(recent -> recent.startedAt() < cutoff && recent.receipt().isDone());
+    }
+
+    private CompletableFuture<SendReceipt> forward(String ownerUrl, String chatId, Message message, String clientRef) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("sender", message.getSender());
+        body.put("content", message.getContent());
+        body.put("timestamp", message.getTimestamp());
+        body.put("clientRef", clientRef);
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(ownerUrl + "/internal/chats/" + chatId + "/messages"))
+                    .timeout(Duration.ofMillis(forwardTimeoutMs))
+                    .header("Content-Type", "application/json")
+                    .header(SECRET_HEADER, listenerOwnership.getSecret())
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof HttpTimeoutException) {
+                    throw new StoreTimeoutException("owner", forwardTimeoutMs);
+                }
+                throw new StoreUnavailableException("owner", "Owner of chat " + chatId + " unreachable: " + cause.getMessage());
+            }
+            switch (response.statusCode()) {
+                case 200 -> {
+                    try {
+                        SendReceipt receipt = objectMapper.readValue(response.body(), SendReceipt.class);
+                        message.setSeq(receipt.getSeq() != null ? receipt.getSeq() : 0);
+                        return receipt;
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Unreadable receipt from " + ownerUrl, e);
+                    }
+                }
+                case 404 -> throw new IllegalArgumentException("Unknown chat " + chatId);
+                case 503 -> throw new StoreOverloadedException("owner");
+                case 504 -> throw new StoreTimeoutException("owner", forwardTimeoutMs);
+                default -> throw new IllegalStateException("Owner of chat " + chatId + " answered " + response.statusCode());
+            }
+        });
+    }
+}
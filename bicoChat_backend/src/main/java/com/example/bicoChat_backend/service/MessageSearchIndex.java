@@ -0,0 +1,414 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.MessageSearchHit;
+import com.example.bicoChat_backend.dto.response.MessageSearchResponse;
+import com.example.bicoChat_backend.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text index of the message contents, kept in memory and updated one message at a time from the
+ * store events of the messages (added, edited, deleted): a search never reads the store.
+ *
+ * Contents are split in words, lowercased and stripped of accents ("perché" finds "perche"). Each chat
+ * has its own posting lists of (document, occurrences) in document order, so a query walks only the
+ * postings of the chats of the user, however common a word is in the rest of the index; the document
+ * frequencies used by the ranking are kept for the whole index. A query returns the messages that
+ * contain all its words, ranked by BM25 and then by recency.
+ *
+ * An edited message becomes a new document and the old one is left dead in its chat until the chat is
+ * compacted, when dead entries outnumber the live ones: compaction renumbers the documents of the chat,
+ * so neither its posting lists nor its document table keep growing with edits. Queries share a read
+ * lock, updates take the write lock.
+ */
+@Service
+public class MessageSearchIndex {
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Comparator<Scored> RANKING = Comparator.comparingDouble(Scored::score)
+            .thenComparingLong(scored -> scored.doc().timestamp);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // all the fields below are guarded by lock
+    private final Map<String, ChatIndex> chats = new HashMap<>();
+    // word -> live documents containing it, over all the chats
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private final Map<String, Set<String>> userChats = new HashMap<>();
+    private final Map<String, List<String>> chatParticipants = new HashMap<>();
+    private long liveDocs;
+    private long totalLength;
+
+    private final int maxResults;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    @Autowired
+    public MessageSearchIndex(@Value("${bicochat.search.max-results:1000}") int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Add or replace a message, from its raw store value
+     */
+    public void index(String chatId, String messageId, Object rawMessage) {
+        Message message = StoreValues.convert(rawMessage, Message.class);
+        if (message == null) {
+            remove(chatId, messageId);
+            return;
+        }
+        List<String> tokens = tokenize(message.getContent());
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(chatId, messageId);
+            ChatIndex chat = chats.computeIfAbsent(chatId, id -> new ChatIndex());
+            int docId = chat.docs.size();
+            chat.docs.add(new Doc(messageId, message, tokens.size(), frequencies.keySet().toArray(new String[0])));
+            chat.messageDocs.put(messageId, docId);
+            frequencies.forEach((token, frequency) -> {
+                chat.postings.computeIfAbsent(token, t -> new Postings()).add(docId, frequency);
+                documentFrequencies.merge(token, 1, Integer::sum);
+            });
+            liveDocs++;
+            totalLength += tokens.size();
+            chat.livePostings += frequencies.size();
+            compactIfNeeded(chat);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String chatId, String messageId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(chatId, messageId);
+            ChatIndex chat = chats.get(chatId);
+            if (chat != null) {
+                compactIfNeeded(chat);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Participants of a chat, from its summary: they are the users allowed to find its messages
+     */
+    public void chatChanged(String chatId, List<String> participants) {
+        List<String> current = participants != null ? new ArrayList<>(participants) : new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            dropParticipantsLocked(chatId);
+            chatParticipants.put(chatId, current);
+            for (String uid : current) {
+                if (uid != null && !uid.isBlank()) {
+                    userChats.computeIfAbsent(uid, id -> new HashSet<>()).add(chatId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forget a deleted chat and its messages
+     */
+    public void chatRemoved(String chatId) {
+        lock.writeLock().lock();
+        try {
+            dropParticipantsLocked(chatId);
+            ChatIndex chat = chats.get(chatId);
+            if (chat != null) {
+                for (String messageId : new ArrayList<>(chat.messageDocs.keySet())) {
+                    removeLocked(chatId, messageId);
+                }
+                chats.remove(chatId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Messages containing every word of the query, in the chats of the user, best match first
+     * @param page page number, from 0
+     * @param size page size
+     */
+    public MessageSearchResponse search(String uid, String query, int page, int size) {
+        queries.incrementAndGet();
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        // in long: a large page number would overflow
+        long first = (long) page * size;
+        int wanted = (int) Math.min(first + size, maxResults);
+        if (terms.isEmpty() || first >= wanted) {
+            return new MessageSearchResponse(query, 0, page, size, Collections.emptyList());
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<String> chatsOfUser = userChats.get(uid);
+            Map<String, Double> idfs = new HashMap<>();
+            for (String term : terms) {
+                Integer frequency = documentFrequencies.get(term);
+                if (chatsOfUser == null || frequency == null) {
+                    return new MessageSearchResponse(query, 0, page, size, Collections.emptyList());
+                }
+                idfs.put(term, Math.log(1 + (liveDocs - frequency + 0.5) / (frequency + 0.5)));
+            }
+            double averageLength = liveDocs > 0 ? (double) totalLength / liveDocs : 1;
+
+            PriorityQueue<Scored> best = new PriorityQueue<>(RANKING);
+            int total = 0;
+            nextChat:
+            for (String chatId : chatsOfUser) {
+                ChatIndex chat = chats.get(chatId);
+                if (chat == null) {
+                    continue;
+                }
+                List<Term> lists = new ArrayList<>();
+                for (String term : terms) {
+                    Postings list = chat.postings.get(term);
+                    if (list == null) {
+                        continue nextChat;
+                    }
+                    lists.add(new Term(list, idfs.get(term)));
+                }
+                lists.sort(Comparator.comparingInt(term -> term.postings().size));
+
+                // walk the shortest list and look the other words up by binary search
+                Postings shortest = lists.get(0).postings();
+                candidates:
+                for (int i = 0; i < shortest.size; i++) {
+                    Doc doc = chat.docs.get(shortest.docIds[i]);
+                    if (doc == null) {
+                        continue;
+                    }
+                    double score = 0;
+                    for (int t = 0; t < lists.size(); t++) {
+                        Postings list = lists.get(t).postings();
+                        int position = t == 0 ? i : Arrays.binarySearch(list.docIds, 0, list.size, shortest.docIds[i]);
+                        if (position < 0) {
+                            continue candidates;
+                        }
+                        int frequency = list.frequencies[position];
+                        score += lists.get(t).idf() * frequency * (K1 + 1)
+                                / (frequency + K1 * (1 - B + B * doc.length / averageLength));
+                    }
+                    total++;
+                    best.add(new Scored(chatId, doc, score));
+                    if (best.size() > wanted) {
+                        best.poll();
+                    }
+                }
+            }
+
+            List<Scored> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING.reversed());
+            List<MessageSearchHit> hits = new ArrayList<>();
+            for (Scored scored : ranked.subList(Math.min((int) first, ranked.size()), ranked.size())) {
+                Doc doc = scored.doc();
+                hits.add(new MessageSearchHit(scored.chatId(), doc.messageId, doc.sender, doc.content, doc.timestamp,
+                        doc.seq, scored.score()));
+            }
+            return new MessageSearchResponse(query, total, page, size, hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return documentFrequencies.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getQueries() {
+        return queries.get();
+    }
+
+    public long getCompactions() {
+        return compactions.get();
+    }
+
+    /**
+     * Lowercase words without accents, split on everything that is not a letter or a digit
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void dropParticipantsLocked(String chatId) {
+        List<String> previous = chatParticipants.remove(chatId);
+        if (previous != null) {
+            for (String uid : previous) {
+                Set<String> ofUser = userChats.get(uid);
+                if (ofUser != null && ofUser.remove(chatId) && ofUser.isEmpty()) {
+                    userChats.remove(uid);
+                }
+            }
+        }
+    }
+
+    private void removeLocked(String chatId, String messageId) {
+        ChatIndex chat = chats.get(chatId);
+        Integer docId = chat != null ? chat.messageDocs.remove(messageId) : null;
+        if (docId == null) {
+            return;
+        }
+        Doc doc = chat.docs.set(docId, null);
+        liveDocs--;
+        totalLength -= doc.length;
+        for (String term : doc.terms) {
+            documentFrequencies.computeIfPresent(term, (t, count) -> count > 1 ? count - 1 : null);
+        }
+        chat.livePostings -= doc.terms.length;
+        chat.deadPostings += doc.terms.length;
+    }
+
+    /**
+     * Drop the dead documents of a chat once their entries are the majority, renumbering the live ones
+     */
+    private void compactIfNeeded(ChatIndex chat) {
+        if (chat.deadPostings <= chat.livePostings) {
+            return;
+        }
+        // old id -> new id; the order is kept, so the posting lists stay sorted
+        int[] renumbered = new int[chat.docs.size()];
+        List<Doc> live = new ArrayList<>(chat.messageDocs.size());
+        for (int docId = 0; docId < chat.docs.size(); docId++) {
+            Doc doc = chat.docs.get(docId);
+            renumbered[docId] = doc != null ? live.size() : -1;
+            if (doc != null) {
+                live.add(doc);
+            }
+        }
+        chat.postings.values().removeIf(list -> {
+            list.renumber(renumbered);
+            return list.size == 0;
+        });
+        chat.messageDocs.replaceAll((messageId, docId) -> renumbered[docId]);
+        chat.docs = live;
+        chat.deadPostings = 0;
+        compactions.incrementAndGet();
+    }
+
+    private record Scored(String chatId, Doc doc, double score) {}
+
+    private record Term(Postings postings, double idf) {}
+
+    /**
+     * Documents and posting lists of one chat; document ids are positions in docs
+     */
+    private static final class ChatIndex {
+        private final Map<String, Postings> postings = new HashMap<>();
+        // null where the document is dead, until the next compaction
+        private List<Doc> docs = new ArrayList<>();
+        private final Map<String, Integer> messageDocs = new HashMap<>();
+        private long livePostings;
+        private long deadPostings;
+    }
+
+    private static final class Doc {
+        private final String messageId;
+        private final String sender;
+        private final String content;
+        private final long timestamp;
+        private final long seq;
+        private final int length;
+        // distinct words, to update the document frequencies when the document dies
+        private final String[] terms;
+
+        private Doc(String messageId, Message message, int length, String[] terms) {
+            this.messageId = messageId;
+            this.sender = message.getSender();
+            this.content = message.getContent();
+            this.timestamp = message.getTimestamp();
+            this.seq = message.getSeq();
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Document ids in increasing order, with the occurrences of the word in each
+     */
+    private static final class Postings {
+        private int[] docIds = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void add(int docId, int frequency) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docIds[size] = docId;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        // keep the live documents under their new ids (-1 for dead ones)
+        private void renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int docId = renumbered[docIds[i]];
+                if (docId >= 0) {
+                    docIds[kept] = docId;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package com.example.bicoChat_backend.service;
 
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import com.example.bicoChat_backend.dto.response.MessagePageResponse;
 import com.example.bicoChat_backend.dto.response.MessageResponse;
 import com.example.bicoChat_backend.model.Message;
-import com.google.firebase.database.GenericTypeIndicator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -15,12 +14,22 @@ import java.util.stream.Collectors;
 @Service
 public class MessageService {
 
+    // extra messages read by getMessagesBySeq, for ids of other instances out of seq order
+    private static final int SEQ_RANGE_SLACK = 16;
+
+    // chats not migrated yet still have UUID keys, which say nothing about the order: sort by time, then by key
+    private static final Comparator<Message> CHRONOLOGICAL = Comparator.comparingLong(Message::getTimestamp)
+            .thenComparing(Message::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     @Autowired
     private ChatService chatService;
 
     @Autowired
     private FirebaseService firebaseService;
 
+    @Autowired
+    private MessageRouter messageRouter;
+
     public CompletableFuture<List<MessageResponse>> getMessages(String chatId) {
         return chatService.getMessagesMap(chatId)
                 .thenApply(messagesMap -> {
@@ -29,7 +38,8 @@ public class MessageService {
                         for (Map.Entry<String, Message> entry : messagesMap.entrySet()) {
                             messageResponseList.add(new MessageResponse(entry.getKey(), entry.getValue()));
                         }
-                        messageResponseList.sort(Comparator.comparing(mr -> mr.getMessage().getTimestamp()));
+                        messageResponseList.sort(Comparator.comparingLong((MessageResponse mr) -> mr.getMessage().getTimestamp())
+                                .thenComparing(MessageResponse::getId));
                     }
                     return messageResponseList;
                 });
@@ -39,7 +49,7 @@ public class MessageService {
         Message message = new Message();
         message.setSender(sender);
         message.setContent(content);
-        message.setTimestamp(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        message.setTimestamp(System.currentTimeMillis());
         message.setRead("currentUser".equals(sender));
 
         return chatService.addMessage(chatId, message)
@@ -52,87 +62,118 @@ public class MessageService {
 
     public CompletableFuture<List<Message>> getMessagesByChatId(String chatId) {
         return chatService.getMessagesMap(chatId)
-                .thenApply(messagesMap -> {
-                    if (messagesMap == null) return Collections.emptyList();
+                .thenCombine(chatService.getChatById(chatId), (messagesMap, summary) -> {
+                    if (messagesMap == null) return Collections.<Message>emptyList();
 
                     return messagesMap.entrySet().stream()
                             .map(entry -> {
                                 Message message = entry.getValue();
                                 message.setId(entry.getKey()); // 👈 imposta l'ID sul messaggio
+                                applyReadReceipt(message, summary);
                                 return message;
                             })
-                            .sorted(Comparator.comparing(Message::getTimestamp))
+                            .sorted(CHRONOLOGICAL)
                             .collect(Collectors.toList());
                 });
     }
 
-    public CompletableFuture<Map<String, Object>> sendMessage(String chatId, Message message) {
-        String messageId = "msg" + System.currentTimeMillis();
-        String timestamp = message.getTimestamp();
-        String content = message.getContent();
-        String sender = message.getSender();
-
-        // 1. Salva il messaggio nella chat
-        CompletableFuture<Void> saveMessageFuture =
-                firebaseService.set("chats/" + chatId + "/messages/" + messageId, message);
-
-        // 2. Recupera i partecipanti
-        GenericTypeIndicator<List<String>> typeIndicator = new GenericTypeIndicator<>() {};
-        CompletableFuture<List<String>> participantsFuture =
-                firebaseService.getWithTypeIndicator("chats/" + chatId + "/participants", typeIndicator);
-
-        // 3. Recupera tutti gli utenti (per prendere i nomi)
-        CompletableFuture<Map<String, Map<String, Object>>> usersFuture =
-                firebaseService.getWithTypeIndicator("users", new GenericTypeIndicator<>() {});
-
-        return CompletableFuture.allOf(saveMessageFuture, participantsFuture, usersFuture)
-                .thenCompose(v -> {
-                    List<String> participants = participantsFuture.join();
-                    Map<String, Map<String, Object>> usersMap = usersFuture.join();
-
-                    List<CompletableFuture<Void>> updates = new ArrayList<>();
-
-                    for (String uid : participants) {
-                        if (uid == null || uid.isBlank()) continue;
-
-                        String userChatPath = String.format("users/%s/chatUser/%s", uid, chatId);
-                        String unreadCountPath = String.format("users/%s/chatUser/%s/unreadCount", uid, chatId);
+    /**
+     * "read" comes from the read watermarks of the chat; the flag stored by older versions still counts
+     */
+    private static void applyReadReceipt(Message message, Optional<ChatSummary> summary) {
+        if (!message.isRead() && summary.isPresent()) {
+            message.setRead(summary.get().isReadByOthers(message));
+        }
+    }
 
-                        // Trova il nome dell'altro partecipante (se non è gruppo)
-                        String name = "Chat";
-                        if (participants.size() == 2) {
-                            String otherId = participants.stream().filter(p -> !p.equals(uid)).findFirst().orElse(null);
-                            if (otherId != null && usersMap.containsKey(otherId)) {
-                                name = (String) usersMap.get(otherId).get("username");
-                            }
+    /**
+     * One page of the chat history, read with a key range query instead of the whole messages node.
+     * Message keys are ordered like the messages; the page is still sorted by time for the legacy keys
+     * of chats not migrated yet.
+     * @param chatId chat id
+     * @param before return the messages older than this message id (scroll back), may be null
+     * @param after return the messages newer than this message id (catch up), may be null
+     * @param limit page size
+     * @return the page, oldest message first, with the cursor of the following page
+     */
+    public CompletableFuture<MessagePageResponse> getMessagesPage(String chatId, String before, String after, int limit) {
+        boolean forward = after != null && before == null;
+        // one extra message tells whether another page exists
+        return firebaseService.getChildrenByKey("chats/" + chatId + "/messages", after, before, limit + 1, !forward)
+                .thenCombine(chatService.getChatById(chatId), (children, summary) -> {
+                    NavigableMap<String, Object> page = new TreeMap<>(children);
+                    boolean hasMore = page.size() > limit;
+                    if (hasMore) {
+                        if (forward) {
+                            page.pollLastEntry();
+                        } else {
+                            page.pollFirstEntry();
                         }
-
-                        Map<String, Object> chatUserUpdate = new HashMap<>();
-                        chatUserUpdate.put("name", name);
-                        chatUserUpdate.put("lastMessage", content);
-                        chatUserUpdate.put("lastUser", sender);
-                        chatUserUpdate.put("timestamp", timestamp);
-
-                        // Recupera unreadCount attuale e incrementa
-                        CompletableFuture<Void> updateFuture = firebaseService.get(unreadCountPath, Long.class)
-                                .thenCompose(currentUnread -> {
-                                    long newCount = (currentUnread != null) ? currentUnread + 1 : 1;
-                                    chatUserUpdate.put("unreadCount", newCount);
-                                    return firebaseService.update(userChatPath, chatUserUpdate);
-                                });
-
-                        updates.add(updateFuture);
                     }
 
-                    return CompletableFuture.allOf(updates.toArray(new CompletableFuture[0]))
-                            .thenApply(done -> Map.of(
-                                    "id", messageId,
-                                    "chatId", chatId,
-                                    "content", content,
-                                    "sender", sender,
-                                    "timestamp", timestamp
-                            ));
+                    List<Message> messages = new ArrayList<>();
+                    page.forEach((messageId, raw) -> {
+                        Message message = StoreValues.convert(raw, Message.class);
+                        message.setId(messageId);
+                        applyReadReceipt(message, summary);
+                        messages.add(message);
+                    });
+                    messages.sort(CHRONOLOGICAL);
+
+                    String nextCursor = null;
+                    if (hasMore && !page.isEmpty()) {
+                        nextCursor = forward ? page.lastKey() : page.firstKey();
+                    }
+                    return new MessagePageResponse(messages, nextCursor, hasMore);
                 });
     }
 
+    /**
+     * Messages with seq between fromSeq and toSeq, to fill a gap seen by a client. On each instance keys
+     * follow the seq order, so the messages from fromSeq on are among the last (lastSeq - fromSeq + 1)
+     * children; a few more are read for the sends of other instances, whose ids may interleave
+     * differently. One key range query from the end.
+     * @param toSeq last seq wanted, 0 up to the latest message
+     * @return the messages found, by seq (deleted messages and failed sends leave a hole)
+     */
+    public CompletableFuture<List<Message>> getMessagesBySeq(String chatId, long fromSeq, long toSeq) {
+        return chatService.getChatById(chatId).thenCompose(optionalSummary -> {
+            long lastSeq = optionalSummary.map(ChatSummary::getLastSeq).orElse(0L);
+            if (fromSeq > lastSeq || (toSeq > 0 && toSeq < fromSeq)) {
+                return CompletableFuture.completedFuture(Collections.<Message>emptyList());
+            }
+            int window = (int) (lastSeq - Math.max(fromSeq, 1) + 1) + SEQ_RANGE_SLACK;
+            return firebaseService.getChildrenByKey("chats/" + chatId + "/messages", null, null, window, true)
+                    .thenApply(children -> {
+                        List<Message> messages = new ArrayList<>();
+                        children.forEach((messageId, raw) -> {
+                            Message message = StoreValues.convert(raw, Message.class);
+                            if (message != null && message.getSeq() >= fromSeq && (toSeq <= 0 || message.getSeq() <= toSeq)) {
+                                message.setId(messageId);
+                                applyReadReceipt(message, optionalSummary);
+                                messages.add(message);
+                            }
+                        });
+                        messages.sort(Comparator.comparingLong(Message::getSeq));
+                        return messages;
+                    });
+        });
+    }
+
+    /**
+     * REST send, stored by the owner of the chat (see {@link MessageRouter}). A retry with the clientRef
+     * of an earlier attempt gets the id, seq and timestamp of the message that attempt stored.
+     */
+    public CompletableFuture<Map<String, Object>> sendMessage(String chatId, Message message, String clientRef) {
+        return messageRouter.send(chatId, message, clientRef)
+                .thenApply(receipt -> Map.of(
+                        "id", receipt.getMessageId(),
+                        "chatId", chatId,
+                        "content", message.getContent(),
+                        "sender", message.getSender(),
+                        "timestamp", receipt.getTimestamp(),
+                        "seq", receipt.getSeq()
+                ));
+    }
+
 }
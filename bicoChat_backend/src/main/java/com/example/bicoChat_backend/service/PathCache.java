@@ -0,0 +1,328 @@
+package com.example.bicoChat_backend.service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded read-through cache of raw values keyed by database path.
+ *
+ * A miss attaches a value listener to the path: its first event fills the entry and every later
+ * event replaces it, so entries never go stale and need no TTL. Entries are evicted (and their
+ * listener removed) when the entry count or the estimated weight exceeds the limits, in CLOCK order:
+ * an entry read since the hand last passed gets a second chance. A path below a cached one is
+ * answered from the cached ancestor.
+ *
+ * Hits take no lock: entries live in a concurrent map and a hit only sets the referenced bit of its
+ * entry. Misses, writes and evictions are serialized by one lock. The map is sorted by path, so the
+ * entries a write touches are its ancestors (one lookup per segment) and a range of descendants,
+ * never a walk over the whole cache.
+ */
+public class PathCache {
+
+    private static final Object NOT_CACHED = new Object();
+
+    private final ChatStore chatStore;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final int minDepth;
+
+    private final Object lock = new Object();
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    // eviction order, guarded by lock; removed entries are skipped when the hand reaches them
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    private int size;
+    private long totalWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param chatStore store used to attach the listeners
+     * @param maxEntries maximum number of cached paths, 0 disables the cache
+     * @param maxWeight maximum estimated size in bytes of all cached values
+     * @param minDepth paths with fewer segments (e.g. the whole "chats" root) are never cached
+     */
+    public PathCache(ChatStore chatStore, int maxEntries, long maxWeight, int minDepth) {
+        this.chatStore = chatStore;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.minDepth = minDepth;
+    }
+
+    /**
+     * True if reads of this path go through the cache
+     */
+    public boolean accepts(String path) {
+        return maxEntries > 0 && StoreValues.splitPath(path).size() >= minDepth;
+    }
+
+    /**
+     * Raw value at path if it can be answered from memory right now, null otherwise
+     */
+    public CompletableFuture<Object> getIfCached(String path) {
+        String key = StoreValues.normalizePath(path);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isReady()) {
+            entry.referenced = true;
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        Object fromAncestor = readFromAncestor(key);
+        if (fromAncestor != NOT_CACHED) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(fromAncestor);
+        }
+        return null;
+    }
+
+    /**
+     * Raw value at path, from memory when cached or through a new listener otherwise
+     */
+    public CompletableFuture<Object> get(String path) {
+        String key = StoreValues.normalizePath(path);
+        CompletableFuture<Object> cached = getIfCached(key);
+        if (cached != null) {
+            return cached;
+        }
+        Entry created;
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                // loading: wait for the listener started by the first miss
+                entry.referenced = true;
+                hits.incrementAndGet();
+                return entry.read();
+            }
+            Object fromAncestor = readFromAncestor(key);
+            if (fromAncestor != NOT_CACHED) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(fromAncestor);
+            }
+            misses.incrementAndGet();
+            created = new Entry(key);
+            entries.put(key, created);
+            clock.add(created);
+            size++;
+        }
+
+        ChatStore.Registration registration = chatStore.addValueListener(key, new ChatStore.ValueListener() {
+            @Override
+            public void onValue(Object value) {
+                store(created, StoreValues.toRaw(value));
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                System.err.println("Cache listener on " + key + " cancelled: " + error.getMessage());
+                synchronized (lock) {
+                    if (entries.get(key) == created) {
+                        remove(key);
+                    }
+                }
+                created.ready.completeExceptionally(error);
+            }
+        });
+        synchronized (lock) {
+            created.registration = registration;
+            if (created.evicted) {
+                registration.remove();
+            }
+        }
+        return created.read();
+    }
+
+    /**
+     * Apply acknowledged writes to the cached entries, so a read issued after a write future
+     * completes sees the write even before the listener event arrives.
+     */
+    public void applyWrites(Map<String, Object> writes) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            for (Map.Entry<String, Object> write : writes.entrySet()) {
+                if (StoreValues.containsIncrement(write.getValue())) {
+                    // only the store knows the resolved value: the entry listener delivers it
+                    continue;
+                }
+                String writtenPath = StoreValues.normalizePath(write.getKey());
+                List<String> segments = StoreValues.splitPath(writtenPath);
+
+                // the written path and its cached ancestors: the write lands inside their value
+                for (int depth = segments.size(); depth >= minDepth; depth--) {
+                    Entry entry = entries.get(StoreValues.joinPath(segments.subList(0, depth)));
+                    if (entry == null || !entry.isReady()) {
+                        continue;
+                    }
+                    List<String> relative = segments.subList(depth, segments.size());
+                    Object replaced = StoreValues.valueAt(entry.value, relative);
+                    entry.value = StoreValues.with(entry.value, relative, 0, write.getValue());
+                    reweigh(entry, entry.weight + childWeight(relative, write.getValue()) - childWeight(relative, replaced));
+                }
+
+                // cached descendants: their value is now a part of the written one
+                String prefix = writtenPath.isEmpty() ? "" : writtenPath + "/";
+                for (Entry entry : entries.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                    if (!entry.isReady()) {
+                        continue;
+                    }
+                    List<String> relative = StoreValues.splitPath(entry.path.substring(writtenPath.length()));
+                    entry.value = StoreValues.valueAt(write.getValue(), relative);
+                    reweigh(entry, StoreValues.weightOf(entry.value));
+                }
+            }
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Drop every entry overlapping the given path (used when a write cannot be applied locally)
+     */
+    public void invalidate(String path) {
+        String key = StoreValues.normalizePath(path);
+        List<String> segments = StoreValues.splitPath(key);
+        synchronized (lock) {
+            List<String> overlapping = new ArrayList<>();
+            for (int depth = segments.size(); depth >= minDepth; depth--) {
+                String ancestor = StoreValues.joinPath(segments.subList(0, depth));
+                if (entries.containsKey(ancestor)) {
+                    overlapping.add(ancestor);
+                }
+            }
+            String prefix = key.isEmpty() ? "" : key + "/";
+            overlapping.addAll(entries.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+            overlapping.forEach(this::remove);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getSize() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    public long getWeight() {
+        synchronized (lock) {
+            return totalWeight;
+        }
+    }
+
+    private Object readFromAncestor(String key) {
+        List<String> segments = StoreValues.splitPath(key);
+        for (int depth = segments.size() - 1; depth >= minDepth; depth--) {
+            Entry ancestor = entries.get(StoreValues.joinPath(segments.subList(0, depth)));
+            if (ancestor != null && ancestor.isReady()) {
+                ancestor.referenced = true;
+                return StoreValues.valueAt(ancestor.value, segments.subList(depth, segments.size()));
+            }
+        }
+        return NOT_CACHED;
+    }
+
+    private void store(Entry entry, Object value) {
+        // weighed before taking the lock: the value may be a large subtree
+        long weight = StoreValues.weightOf(value);
+        synchronized (lock) {
+            entry.value = value;
+            reweigh(entry, weight);
+            evictIfNeeded();
+        }
+        // readers already waiting are answered even if the entry was evicted meanwhile
+        entry.ready.complete(null);
+    }
+
+    /**
+     * Weight of a value at relative inside an entry, with its key (0 for the entry value itself)
+     */
+    private static long childWeight(List<String> relative, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        long weight = StoreValues.weightOf(value);
+        return relative.isEmpty() ? weight : weight + 16 + relative.get(relative.size() - 1).length();
+    }
+
+    private void reweigh(Entry entry, long weight) {
+        if (!entry.evicted) {
+            totalWeight += weight - entry.weight;
+        }
+        entry.weight = weight;
+    }
+
+    private void evictIfNeeded() {
+        while ((size > maxEntries || totalWeight > maxWeight) && !clock.isEmpty()) {
+            Entry entry = clock.poll();
+            if (entry.evicted) {
+                continue;
+            }
+            if (entry.referenced) {
+                // second chance
+                entry.referenced = false;
+                clock.add(entry);
+                continue;
+            }
+            entries.remove(entry.path, entry);
+            drop(entry);
+            evictions.incrementAndGet();
+        }
+        if (clock.size() > 2 * size + 64) {
+            clock.removeIf(entry -> entry.evicted);
+        }
+    }
+
+    private void remove(String path) {
+        Entry entry = entries.remove(path);
+        if (entry != null) {
+            drop(entry);
+        }
+    }
+
+    private void drop(Entry entry) {
+        entry.evicted = true;
+        size--;
+        totalWeight -= entry.weight;
+        if (entry.registration != null) {
+            entry.registration.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final String path;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private volatile Object value;
+        private volatile boolean referenced;
+        private long weight;
+        private boolean evicted;
+        private ChatStore.Registration registration;
+
+        private Entry(String path) {
+            this.path = path;
+        }
+
+        private boolean isReady() {
+            return ready.isDone() && !ready.isCompletedExceptionally();
+        }
+
+        private CompletableFuture<Object> read() {
+            if (isReady()) {
+                return CompletableFuture.completedFuture(value);
+            }
+            return ready.thenApply(ignored -> value);
+        }
+    }
+}
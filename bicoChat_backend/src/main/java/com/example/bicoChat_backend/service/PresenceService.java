@@ -0,0 +1,292 @@
+package com.example.bicoChat_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presence of the users connected over WebSocket, kept in memory.
+ *
+ * Every inbound frame of a session (STOMP heartbeats included) refreshes its liveness, frames other
+ * than heartbeats also refresh its activity. A user is online while one of their sessions is active,
+ * away while the sessions are alive but idle, offline when no session is left; sessions that stop
+ * sending frames are found by a timer wheel. Heartbeats only touch two timestamps: the status is
+ * written to users/{uid}/status by a periodic flush, one multi-path update for all the users whose
+ * status really changed since the previous flush (friends are notified from that write, see InboxPublisher).
+ */
+@Service
+public class PresenceService {
+
+    public static final String ONLINE = "online";
+    public static final String AWAY = "away";
+    public static final String OFFLINE = "offline";
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Value("${bicochat.presence.stale-after-ms:30000}")
+    private long staleAfterMs;
+
+    @Value("${bicochat.presence.away-after-ms:300000}")
+    private long awayAfterMs;
+
+    @Value("${bicochat.presence.flush-ms:2000}")
+    private long flushMs;
+
+    @Value("${bicochat.presence.tick-ms:1000}")
+    private long tickMs;
+
+    private final Object lock = new Object();
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByUser = new HashMap<>();
+    private final Map<String, String> statuses = new HashMap<>();
+    // status set by the user, only for users with sessions
+    private final Map<String, String> manualStatuses = new HashMap<>();
+    private final Map<String, String> flushedStatuses = new HashMap<>();
+    private final Map<String, String> dirty = new HashMap<>();
+
+    private final AtomicLong transitions = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    private TimerWheel<String> wheel;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        // the wheel spans the longest timeout, longer delays are simply rescheduled
+        wheel = new TimerWheel<>((int) Math.min(4096, Math.max(staleAfterMs, awayAfterMs) / tickMs + 2), tickMs);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (user == null || sessionId == null) {
+            return;
+        }
+        SessionState session = new SessionState(user.getName(), System.currentTimeMillis());
+        sessions.put(sessionId, session);
+        synchronized (lock) {
+            sessionsByUser.computeIfAbsent(session.uid, uid -> new HashSet<>()).add(sessionId);
+            refresh(session.uid, System.currentTimeMillis());
+        }
+        wheel.schedule(sessionId, Math.min(staleAfterMs, awayAfterMs));
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        removeSession(event.getSessionId());
+    }
+
+    /**
+     * An inbound frame of a session
+     * @param activity false for heartbeats, true for frames sent by the user (SEND, SUBSCRIBE...)
+     */
+    public void onFrame(String sessionId, boolean activity) {
+        SessionState session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        session.lastFrame = now;
+        if (activity) {
+            long previous = session.lastActivity;
+            session.lastActivity = now;
+            if (now - previous >= awayAfterMs) {
+                // back from away: do not wait for the wheel
+                synchronized (lock) {
+                    refresh(session.uid, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Status chosen by the user (e.g. PUT /api/users/{uid}/status), written with the next flush.
+     * While the user has sessions it overrides the status computed from them, until it is cleared
+     * (null or empty status) or the last session ends. A user without sessions gets it written once,
+     * nothing is kept in memory.
+     */
+    public void setStatus(String uid, String status) {
+        synchronized (lock) {
+            if (status == null || status.isBlank()) {
+                manualStatuses.remove(uid);
+                refresh(uid, System.currentTimeMillis());
+            } else if (sessionsByUser.containsKey(uid)) {
+                manualStatuses.put(uid, status);
+                changeStatus(uid, status);
+            } else {
+                dirty.put(uid, status);
+            }
+        }
+    }
+
+    public String getStatus(String uid) {
+        synchronized (lock) {
+            return statuses.getOrDefault(uid, OFFLINE);
+        }
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getOnlineUsers() {
+        synchronized (lock) {
+            return (int) statuses.values().stream().filter(ONLINE::equals).count();
+        }
+    }
+
+    public long getTransitions() {
+        return transitions.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            for (String sessionId : wheel.advance()) {
+                SessionState session = sessions.get(sessionId);
+                if (session == null) {
+                    continue;
+                }
+                long idle = now - session.lastFrame;
+                if (idle >= staleAfterMs) {
+                    removeSession(sessionId);
+                    continue;
+                }
+                synchronized (lock) {
+                    refresh(session.uid, now);
+                }
+                // next check: when the session would become stale, or away if it is still active
+                long untilStale = staleAfterMs - idle;
+                long untilAway = awayAfterMs - (now - session.lastActivity);
+                wheel.schedule(sessionId, untilAway > 0 ? Math.min(untilStale, untilAway) : untilStale);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Presence tick failed: " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        Map<String, Object> updates = new HashMap<>();
+        synchronized (lock) {
+            dirty.forEach((uid, status) -> {
+                if (!status.equals(flushedStatuses.get(uid))) {
+                    updates.put("users/" + uid + "/status", status);
+                    flushedStatuses.put(uid, status);
+                }
+                // users without sessions are forgotten once their last status is written
+                if (!sessionsByUser.containsKey(uid)) {
+                    flushedStatuses.remove(uid);
+                }
+            });
+            dirty.clear();
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        flushes.incrementAndGet();
+        firebaseService.updateMulti(updates).exceptionally(error -> {
+            System.err.println("Presence flush failed: " + error.getMessage());
+            return null;
+        });
+    }
+
+    private void removeSession(String sessionId) {
+        SessionState session = sessionId != null ? sessions.remove(sessionId) : null;
+        if (session == null) {
+            return;
+        }
+        synchronized (lock) {
+            Set<String> userSessions = sessionsByUser.get(session.uid);
+            if (userSessions != null) {
+                userSessions.remove(sessionId);
+                if (userSessions.isEmpty()) {
+                    sessionsByUser.remove(session.uid);
+                }
+            }
+            refresh(session.uid, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Recompute the status of a user from their sessions, or take the status they set (called holding the lock)
+     */
+    private void refresh(String uid, long now) {
+        if (!sessionsByUser.containsKey(uid)) {
+            manualStatuses.remove(uid);
+        } else if (manualStatuses.containsKey(uid)) {
+            changeStatus(uid, manualStatuses.get(uid));
+            return;
+        }
+        String status = OFFLINE;
+        for (String sessionId : sessionsByUser.getOrDefault(uid, Collections.emptySet())) {
+            SessionState session = sessions.get(sessionId);
+            if (session == null) {
+                continue;
+            }
+            if (now - session.lastActivity < awayAfterMs) {
+                status = ONLINE;
+                break;
+            }
+            status = AWAY;
+        }
+        changeStatus(uid, status);
+    }
+
+    private void changeStatus(String uid, String status) {
+        if (status.equals(statuses.getOrDefault(uid, OFFLINE))) {
+            return;
+        }
+        transitions.incrementAndGet();
+        if (OFFLINE.equals(status) && !sessionsByUser.containsKey(uid)) {
+            statuses.remove(uid);
+        } else {
+            statuses.put(uid, status);
+        }
+        dirty.put(uid, status);
+    }
+
+    private static final class SessionState {
+        private final String uid;
+        private volatile long lastFrame;
+        private volatile long lastActivity;
+
+        private SessionState(String uid, long now) {
+            this.uid = uid;
+            this.lastFrame = now;
+            this.lastActivity = now;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.model.UserProfile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batching loader of user profiles (username, email, avatar), in the style of DataLoader.
+ *
+ * Profiles are kept in memory, fed by the listener on users/ that already receives every user, so a
+ * friend list is usually resolved without any read. Lookups that miss are collected for a short
+ * window, deduplicated and fetched together: one read of each missing user, straight to the store.
+ * The path cache is bypassed on purpose: a profile is needed once, and the listener on users/ keeps
+ * it fresh from then on, so a cache entry (and its own listener) per user would be pure overhead.
+ */
+@Service
+public class ProfileLoader {
+
+    private static final String USERS_PATH = "users";
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Value("${bicochat.profiles.batch-window-ms:2}")
+    private long batchWindowMs;
+
+    private final Map<String, UserProfile> profiles = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+    private Map<String, CompletableFuture<Optional<UserProfile>>> pending = new HashMap<>();
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Update the profile of a user from its raw value (store listener on users/)
+     */
+    public void userChanged(String uid, Object rawUser) {
+        if (rawUser == null) {
+            profiles.remove(uid);
+            return;
+        }
+        profiles.put(uid, toProfile(rawUser));
+    }
+
+    public void userRemoved(String uid) {
+        profiles.remove(uid);
+    }
+
+    /**
+     * Profile of a user, empty if the user does not exist
+     */
+    public CompletableFuture<Optional<UserProfile>> load(String uid) {
+        requested.incrementAndGet();
+        UserProfile profile = profiles.get(uid);
+        if (profile != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of(profile));
+        }
+
+        boolean firstOfBatch;
+        CompletableFuture<Optional<UserProfile>> future;
+        synchronized (lock) {
+            future = pending.get(uid);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            firstOfBatch = pending.isEmpty();
+            pending.put(uid, future);
+        }
+        if (firstOfBatch) {
+            CompletableFuture.runAsync(this::dispatch,
+                    CompletableFuture.delayedExecutor(batchWindowMs, TimeUnit.MILLISECONDS));
+        }
+        return future;
+    }
+
+    /**
+     * Profiles of several users, keyed by uid; users that do not exist are missing from the map
+     */
+    public CompletableFuture<Map<String, UserProfile>> loadAll(Collection<String> uids) {
+        Map<String, CompletableFuture<Optional<UserProfile>>> futures = new LinkedHashMap<>();
+        for (String uid : uids) {
+            futures.computeIfAbsent(uid, this::load);
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, UserProfile> result = new LinkedHashMap<>();
+                    futures.forEach((uid, future) -> future.join().ifPresent(profile -> result.put(uid, profile)));
+                    return result;
+                });
+    }
+
+    public long getRequested() {
+        return requested.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getFetched() {
+        return fetched.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    private void dispatch() {
+        Map<String, CompletableFuture<Optional<UserProfile>>> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        batches.incrementAndGet();
+        batch.forEach((uid, future) -> {
+            UserProfile known = profiles.get(uid);
+            if (known != null) {
+                future.complete(Optional.of(known));
+                return;
+            }
+            fetched.incrementAndGet();
+            firebaseService.getUncached(USERS_PATH + "/" + uid, Object.class)
+                    .thenApply(rawUser -> {
+                        if (rawUser == null) {
+                            return Optional.<UserProfile>empty();
+                        }
+                        UserProfile profile = toProfile(rawUser);
+                        profiles.putIfAbsent(uid, profile);
+                        return Optional.of(profile);
+                    })
+                    .whenComplete((profile, error) -> {
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                        } else {
+                            future.complete(profile);
+                        }
+                    });
+        });
+    }
+
+    private static UserProfile toProfile(Object rawUser) {
+        return new UserProfile(asString(StoreValues.child(rawUser, "username")),
+                asString(StoreValues.child(rawUser, "email")),
+                asString(StoreValues.child(rawUser, "avatar")));
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
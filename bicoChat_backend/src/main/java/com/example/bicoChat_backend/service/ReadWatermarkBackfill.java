@@ -0,0 +1,82 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Gives the users/{uid}/chatUser entries written by older versions the lastMessageSeq and lastReadSeq
+ * their unread count is derived from (see {@link com.example.bicoChat_backend.model.User.ChatInfo#getUnreadCount}).
+ * lastMessageSeq is where the {@link ChatSequencer} of the chat starts from, and the watermark sits the
+ * stored unread counter below it, so the count shown does not jump. Entries that already have a
+ * lastMessageSeq are left alone. Users are read a page at a time, and a completed run leaves
+ * {@link #MARKER_PATH} like {@link ChatMetaBackfill}, after which it runs.
+ */
+@Component
+@Order(3)
+public class ReadWatermarkBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWatermarkBackfill.class);
+
+    private static final int PAGE_SIZE = 50;
+
+    static final String MARKER_PATH = "migrations/readWatermarkBackfill";
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // straight to the store: a one-off scan must not fill the path cache with listeners
+        ChatStore chatStore = firebaseService.getChatStore();
+        if (chatStore.exists(MARKER_PATH).join()) {
+            return;
+        }
+        Map<String, Long> chatSeqs = new HashMap<>();
+        int seeded = 0;
+        String cursor = null;
+        NavigableMap<String, Object> page;
+        do {
+            page = firebaseService.getChildrenByKey("users", cursor, null, PAGE_SIZE, false).join();
+            Map<String, Object> updates = new HashMap<>();
+            page.forEach((uid, rawUser) -> StoreValues.children(StoreValues.child(rawUser, "chatUser"))
+                    .forEach((chatId, chatInfo) -> {
+                        if (StoreValues.child(chatInfo, "lastMessageSeq") != null) {
+                            return;
+                        }
+                        long lastSeq = chatSeqs.computeIfAbsent(chatId, id -> lastSeq(chatStore, id));
+                        Object unread = StoreValues.child(chatInfo, "unreadCount");
+                        long unreadCount = unread instanceof Number number ? number.longValue() : 0;
+                        String chatUserPath = "users/" + uid + "/chatUser/" + chatId;
+                        updates.put(chatUserPath + "/lastMessageSeq", lastSeq);
+                        updates.put(chatUserPath + "/lastReadSeq", Math.max(0, lastSeq - unreadCount));
+                    }));
+            if (!updates.isEmpty()) {
+                firebaseService.updateMulti(updates).join();
+                seeded += updates.size() / 2;
+            }
+            cursor = page.isEmpty() ? null : page.lastKey();
+        } while (page.size() == PAGE_SIZE);
+
+        firebaseService.set(MARKER_PATH, System.currentTimeMillis()).join();
+        log.info("Read watermarks: {} chat entries seeded", seeded);
+    }
+
+    // same seed as the sequencer, without its read of the newest message (absent seqs are 0 for old chats)
+    private static long lastSeq(ChatStore chatStore, String chatId) {
+        ChatSummary summary = StoreValues.convert(chatStore.get("chatMeta/" + chatId, Object.class).join(), ChatSummary.class);
+        if (summary == null) {
+            return 0;
+        }
+        return Math.max(Math.max(summary.getLastSeq(), summary.getLastMessageSeq()), summary.getMessageCount());
+    }
+}
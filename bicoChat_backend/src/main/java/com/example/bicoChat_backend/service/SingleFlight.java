@@ -0,0 +1,69 @@
+package com.example.bicoChat_backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing: while a read for a key is in flight, every other caller asking for the
+ * same key receives the same future instead of issuing its own read.
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+
+    /**
+     * Run the loader unless a call with the same key is already in flight
+     * @param key identity of the read (e.g. the normalized path)
+     * @param loader starts the actual read
+     * @return the shared future for key
+     */
+    public CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> loader) {
+        calls.incrementAndGet();
+        CompletableFuture<T> shared = inFlight.get(key);
+        if (shared != null) {
+            return shared;
+        }
+
+        CompletableFuture<T> placeholder = new CompletableFuture<>();
+        shared = inFlight.putIfAbsent(key, placeholder);
+        if (shared != null) {
+            return shared;
+        }
+
+        executions.incrementAndGet();
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, placeholder);
+                if (error != null) {
+                    placeholder.completeExceptionally(error);
+                } else {
+                    placeholder.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, placeholder);
+            placeholder.completeExceptionally(e);
+        }
+        return placeholder;
+    }
+
+    /**
+     * Number of reads requested
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Number of reads actually issued
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+}
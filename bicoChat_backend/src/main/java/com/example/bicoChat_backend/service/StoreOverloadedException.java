@@ -0,0 +1,11 @@
+package com.example.bicoChat_backend.service;
+
+/**
+ * Rejected without being started: every permit of the bulkhead is taken and its queue is full
+ */
+public class StoreOverloadedException extends StoreUnavailableException {
+
+    public StoreOverloadedException(String bulkhead) {
+        super(bulkhead, "Too many " + bulkhead + " in progress, try again later");
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.bicoChat_backend.service;
+
+/**
+ * The operation (queue time included) did not complete before the deadline of its bulkhead
+ */
+public class StoreTimeoutException extends StoreUnavailableException {
+
+    public StoreTimeoutException(String bulkhead, long timeoutMillis) {
+        super(bulkhead, "Store " + bulkhead + " did not complete within " + timeoutMillis + " ms");
+    }
+}
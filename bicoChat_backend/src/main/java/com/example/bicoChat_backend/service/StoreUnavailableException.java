@@ -0,0 +1,19 @@
+package com.example.bicoChat_backend.service;
+
+/**
+ * The store could not serve an operation in time or refused it to protect itself.
+ * Controllers turn it into 503/504 (see StoreExceptionHandler).
+ */
+public class StoreUnavailableException extends RuntimeException {
+
+    private final String bulkhead;
+
+    public StoreUnavailableException(String bulkhead, String message) {
+        super(message);
+        this.bulkhead = bulkhead;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+}
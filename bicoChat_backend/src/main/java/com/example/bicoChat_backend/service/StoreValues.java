@@ -0,0 +1,321 @@
+package com.example.bicoChat_backend.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.firebase.database.GenericTypeIndicator;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Helpers to move between model objects and the raw trees (Map/List/String/Long/Double/Boolean)
+ * stored by a {@link ChatStore}, following the Realtime Database conventions:
+ * null children are dropped, integers are Longs and empty maps disappear.
+ */
+public final class StoreValues {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final String SERVER_VALUE = ".sv";
+    private static final String INCREMENT = "increment";
+
+    private StoreValues() {
+    }
+
+    /**
+     * Placeholder adding delta to the number stored at the written path (a missing value counts as 0).
+     * It is the map Firebase's ServerValue.increment produces, so Firebase resolves it on the server
+     * and the other layers can recognize it.
+     */
+    public static Map<String, Object> increment(long delta) {
+        return Map.of(SERVER_VALUE, Map.of(INCREMENT, delta));
+    }
+
+    /**
+     * Delta of an increment placeholder, null if the raw value is not one
+     */
+    public static Number incrementDelta(Object raw) {
+        if (raw instanceof Map<?, ?> map && map.size() == 1
+                && map.get(SERVER_VALUE) instanceof Map<?, ?> serverValue
+                && serverValue.get(INCREMENT) instanceof Number delta) {
+            return delta;
+        }
+        return null;
+    }
+
+    /**
+     * True if an increment placeholder appears anywhere in the raw tree
+     */
+    public static boolean containsIncrement(Object raw) {
+        if (incrementDelta(raw) != null) {
+            return true;
+        }
+        if (raw instanceof Map<?, ?> map) {
+            return map.values().stream().anyMatch(StoreValues::containsIncrement);
+        }
+        return false;
+    }
+
+    /**
+     * Resolve the increments of a write against the value it replaces: an increment over a number
+     * becomes the sum, over nothing the delta, and two increments become one with the summed delta.
+     * @param current raw value currently at the written path
+     * @param incoming raw value being written
+     */
+    public static Object resolveIncrements(Object current, Object incoming) {
+        Number delta = incrementDelta(incoming);
+        if (delta != null) {
+            Number currentDelta = incrementDelta(current);
+            if (currentDelta != null) {
+                return increment(currentDelta.longValue() + delta.longValue());
+            }
+            if (current instanceof Number number) {
+                return add(number, delta);
+            }
+            return normalizeNumber(delta);
+        }
+        if (incoming instanceof Map<?, ?> map && containsIncrement(incoming)) {
+            TreeMap<String, Object> resolved = new TreeMap<>();
+            map.forEach((key, child) -> resolved.put(String.valueOf(key),
+                    resolveIncrements(child(current, String.valueOf(key)), child)));
+            return Collections.unmodifiableNavigableMap(resolved);
+        }
+        return incoming;
+    }
+
+    /**
+     * Split a database path into its segments, ignoring leading, trailing and double slashes
+     */
+    public static List<String> splitPath(String path) {
+        List<String> segments = new ArrayList<>();
+        if (path == null) {
+            return segments;
+        }
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Join segments back into a normalized path ("" for the root)
+     */
+    public static String joinPath(List<String> segments) {
+        return String.join("/", segments);
+    }
+
+    /**
+     * Normalized form of a path, e.g. "/chats//abc/" becomes "chats/abc"
+     */
+    public static String normalizePath(String path) {
+        return joinPath(splitPath(path));
+    }
+
+    /**
+     * True if ancestor is the same path as descendant or one of its parents
+     */
+    public static boolean isAncestorOrSelf(String ancestor, String descendant) {
+        if (ancestor.isEmpty() || ancestor.equals(descendant)) {
+            return true;
+        }
+        return descendant.startsWith(ancestor + "/");
+    }
+
+    /**
+     * Convert a model object (or a raw value) to the raw tree representation
+     */
+    public static Object toRaw(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Number number) {
+            return normalizeNumber(number);
+        }
+        if (value instanceof Map<?, ?> || value instanceof Collection<?>) {
+            return normalize(value);
+        }
+        return normalize(MAPPER.convertValue(value, Object.class));
+    }
+
+    /**
+     * Convert a raw tree to the given type
+     */
+    public static <T> T convert(Object raw, Class<T> valueType) {
+        if (raw == null) {
+            return null;
+        }
+        if (valueType == Object.class) {
+            return valueType.cast(raw);
+        }
+        return MAPPER.convertValue(raw, valueType);
+    }
+
+    /**
+     * Convert a raw tree to the type captured by a Firebase GenericTypeIndicator
+     */
+    public static <T> T convert(Object raw, GenericTypeIndicator<T> typeIndicator) {
+        if (raw == null) {
+            return null;
+        }
+        return MAPPER.convertValue(raw, typeOf(typeIndicator));
+    }
+
+    /**
+     * Jackson type captured by an anonymous GenericTypeIndicator subclass
+     */
+    public static JavaType typeOf(GenericTypeIndicator<?> typeIndicator) {
+        Type superclass = typeIndicator.getClass().getGenericSuperclass();
+        if (!(superclass instanceof ParameterizedType parameterized)) {
+            throw new IllegalArgumentException("GenericTypeIndicator must be created as an anonymous subclass");
+        }
+        return MAPPER.getTypeFactory().constructType(parameterized.getActualTypeArguments()[0]);
+    }
+
+    /**
+     * Value found at the given segments below node, null if missing
+     */
+    public static Object valueAt(Object node, List<String> segments) {
+        Object current = node;
+        for (String segment : segments) {
+            current = child(current, segment);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Direct child of a raw node, lists are addressed by index like in Firebase
+     */
+    public static Object child(Object node, String key) {
+        if (node instanceof Map<?, ?> map) {
+            return map.get(key);
+        }
+        if (node instanceof List<?> list) {
+            try {
+                int index = Integer.parseInt(key);
+                return index >= 0 && index < list.size() ? list.get(index) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Children of a raw node as a key ordered map (lists become index keyed maps)
+     */
+    public static NavigableMap<String, Object> children(Object node) {
+        NavigableMap<String, Object> children = new TreeMap<>();
+        if (node instanceof Map<?, ?> map) {
+            map.forEach((key, value) -> children.put(String.valueOf(key), value));
+        } else if (node instanceof List<?> list) {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) != null) {
+                    children.put(String.valueOf(i), list.get(i));
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Copy-on-write replacement of the value at segments below root.
+     * Nodes along the path are copied, every untouched subtree is shared with the old root.
+     * @return the new root, null if the whole tree became empty
+     */
+    public static Object with(Object root, List<String> segments, int from, Object value) {
+        if (from == segments.size()) {
+            return value;
+        }
+        String key = segments.get(from);
+        NavigableMap<String, Object> copy = children(root);
+        Object replaced = with(copy.get(key), segments, from + 1, value);
+        if (replaced == null) {
+            copy.remove(key);
+        } else {
+            copy.put(key, replaced);
+        }
+        return copy.isEmpty() ? null : Collections.unmodifiableNavigableMap(copy);
+    }
+
+    /**
+     * Rough size in bytes of a raw tree, used for weight based eviction
+     */
+    public static long weightOf(Object node) {
+        if (node == null) {
+            return 0;
+        }
+        if (node instanceof Map<?, ?> map) {
+            long weight = 16;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                weight += 16 + String.valueOf(entry.getKey()).length() + weightOf(entry.getValue());
+            }
+            return weight;
+        }
+        if (node instanceof List<?> list) {
+            long weight = 16;
+            for (Object item : list) {
+                weight += 8 + weightOf(item);
+            }
+            return weight;
+        }
+        if (node instanceof String string) {
+            return 24 + string.length();
+        }
+        return 16;
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            TreeMap<String, Object> normalized = new TreeMap<>();
+            map.forEach((key, child) -> {
+                Object normalizedChild = normalize(child);
+                if (normalizedChild != null) {
+                    normalized.put(String.valueOf(key), normalizedChild);
+                }
+            });
+            return normalized.isEmpty() ? null : Collections.unmodifiableNavigableMap(normalized);
+        }
+        if (value instanceof Collection<?> collection) {
+            List<Object> normalized = new ArrayList<>();
+            for (Object item : collection) {
+                normalized.add(normalize(item));
+            }
+            return normalized.isEmpty() ? null : Collections.unmodifiableList(normalized);
+        }
+        if (value instanceof Number number) {
+            return normalizeNumber(number);
+        }
+        if (value instanceof String || value instanceof Boolean || value == null) {
+            return value;
+        }
+        return toRaw(value);
+    }
+
+    private static Number add(Number number, Number delta) {
+        if (number instanceof Double || delta instanceof Double || delta instanceof Float) {
+            return number.doubleValue() + delta.doubleValue();
+        }
+        return number.longValue() + delta.longValue();
+    }
+
+    private static Object normalizeNumber(Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            return number.longValue();
+        }
+        if (number instanceof Float) {
+            return number.doubleValue();
+        }
+        return number;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bicoChat_backend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed timer wheel: a ring of slots advanced by one slot per tick.
+ * Scheduling and expiring a key are O(1) whatever the number of keys, which suits many timeouts
+ * that are mostly pushed back (e.g. session liveness): owners keep their own deadline, and a key
+ * coming due early (or a delay longer than the wheel) is simply checked and scheduled again.
+ */
+public class TimerWheel<K> {
+
+    private final List<Set<K>> slots = new ArrayList<>();
+    private final long tickMillis;
+    private int cursor;
+
+    /**
+     * @param slotCount number of slots, the longest delay is slotCount - 1 ticks
+     * @param tickMillis time covered by one slot
+     */
+    public TimerWheel(int slotCount, long tickMillis) {
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new LinkedHashSet<>());
+        }
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * Put key in the slot reached after delayMillis (at least the next one, at most the last one)
+     */
+    public synchronized void schedule(K key, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        ticks = Math.min(ticks, slots.size() - 1);
+        slots.get((int) ((cursor + ticks) % slots.size())).add(key);
+    }
+
+    /**
+     * Move to the next slot
+     * @return the keys due in it
+     */
+    public synchronized List<K> advance() {
+        cursor = (cursor + 1) % slots.size();
+        Set<K> slot = slots.get(cursor);
+        List<K> due = new ArrayList<>(slot);
+        slot.clear();
+        return due;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.dto.response.TypingEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Typing indicators, relayed to /topic/typing/{chatId} and kept only in memory: nothing here goes
+ * through the store.
+ *
+ * Per user and chat, "typing" is relayed at most once per throttle window, "stopped" only if the user
+ * was typing, and an indicator that is not refreshed within the expiry is stopped by the server
+ * (found by a timer wheel), so a client that disconnects mid-sentence does not leave it on.
+ */
+@Service
+public class TypingService {
+
+    private final BroadcastScheduler broadcastScheduler;
+    private final long throttleMillis;
+    private final long expireMillis;
+
+    private final Map<String, TypingState> typing = new ConcurrentHashMap<>();
+    private final TimerWheel<String> wheel;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "typing-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong relayed = new AtomicLong();
+
+    @Autowired
+    public TypingService(BroadcastScheduler broadcastScheduler,
+                         @Value("${bicochat.typing.throttle-ms:1000}") long throttleMillis,
+                         @Value("${bicochat.typing.expire-ms:5000}") long expireMillis) {
+        this.broadcastScheduler = broadcastScheduler;
+        this.throttleMillis = throttleMillis;
+        this.expireMillis = expireMillis;
+        long tickMillis = Math.max(50, expireMillis / 10);
+        this.wheel = new TimerWheel<>((int) (expireMillis / tickMillis) + 2, tickMillis);
+        scheduler.scheduleAtFixedRate(this::expire, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A typing event sent by a user
+     * @param isTyping true while the user types, false when they stop (or send the message)
+     */
+    public void onTyping(String chatId, String uid, boolean isTyping) {
+        received.incrementAndGet();
+        String key = chatId + "/" + uid;
+        if (!isTyping) {
+            if (typing.remove(key) != null) {
+                relay(chatId, uid, false);
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean[] relay = {false};
+        typing.compute(key, (k, state) -> {
+            if (state == null) {
+                state = new TypingState(chatId, uid);
+                wheel.schedule(k, expireMillis);
+                relay[0] = true;
+            } else if (now - state.lastRelayed >= throttleMillis) {
+                relay[0] = true;
+            }
+            state.expiresAt = now + expireMillis;
+            if (relay[0]) {
+                state.lastRelayed = now;
+            }
+            return state;
+        });
+        if (relay[0]) {
+            relay(chatId, uid, true);
+        }
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getRelayed() {
+        return relayed.get();
+    }
+
+    public int getActive() {
+        return typing.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (String key : wheel.advance()) {
+            TypingState state = typing.get(key);
+            if (state == null) {
+                continue;
+            }
+            long remaining = state.expiresAt - now;
+            if (remaining > 0) {
+                wheel.schedule(key, remaining);
+            } else if (typing.remove(key, state)) {
+                relay(state.chatId, state.uid, false);
+            }
+        }
+    }
+
+    private void relay(String chatId, String uid, boolean isTyping) {
+        relayed.incrementAndGet();
+        broadcastScheduler.publish("/topic/typing/" + chatId, new TypingEvent(chatId, uid, isTyping));
+    }
+
+    private static final class TypingState {
+        private final String chatId;
+        private final String uid;
+        private volatile long lastRelayed;
+        private volatile long expiresAt;
+
+        private TypingState(String chatId, String uid) {
+            this.chatId = chatId;
+            this.uid = uid;
+        }
+    }
+}
@@ -6,7 +6,6 @@ import com.google.firebase.database.GenericTypeIndicator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -45,6 +44,7 @@ public class UserService {
                 });
     }
 
+
     public CompletableFuture<UserResponse> getCurrentUser() {
         return getUserById("currentUser").thenCompose(userOpt -> {
             if (userOpt.isPresent()) {
@@ -60,7 +60,7 @@ public class UserService {
             defaultChats.put("welcome", new User.ChatInfo(
                     "Welcome on BicoChat!",
                     "System",
-                    LocalDateTime.now().toString(),
+                    System.currentTimeMillis(),
                     0,
                     "system" // lastUser
             ));
@@ -88,42 +88,5 @@ public class UserService {
                 .thenApply(chats -> chats != null ? chats : new HashMap<>());
     }
 
-    public CompletableFuture<Void> markChatAsRead(String chatId) {
-        // Recupera i partecipanti alla chat
-        return firebaseService.getWithTypeIndicator("chats/" + chatId + "/participants", new GenericTypeIndicator<List<String>>() {})
-                .thenCompose(participants -> {
-                    System.out.println("Partecipanti per la chat " + chatId + ": " + participants);
-                    if (participants == null || participants.isEmpty()) {
-                        throw new RuntimeException("Nessun partecipante trovato per la chat " + chatId);
-                    }
-
-                    // Crea gli aggiornamenti per tutti i partecipanti (set unreadCount a 0)
-                    Map<String, Object> updates = new HashMap<>();
-                    for (String participantId : participants) {
-                        String participantPath = USERS_PATH + "/" + participantId + "/chatUser/" + chatId + "/unreadCount";
-                        updates.put(participantPath, 0);  // Imposta unreadCount a 0 per tutti i partecipanti
-                    }
-
-                    // Modifica anche i messaggi della chat, settando "read" a true
-                    return firebaseService.getWithTypeIndicator("chats/" + chatId + "/messages", new GenericTypeIndicator<Map<String, Map<String, Object>>>() {})
-                            .thenCompose(messages -> {
-                                Map<String, Object> messagesUpdates = new HashMap<>();
-                                if (messages != null) {
-                                    messages.forEach((messageId, messageData) -> {
-                                        if (messageData != null && !Boolean.TRUE.equals(messageData.get("read"))) {
-                                            messagesUpdates.put("chats/" + chatId + "/messages/" + messageId + "/read", true);
-                                        }
-                                    });
-                                }
-                                updates.putAll(messagesUpdates);  // Aggiungi gli aggiornamenti sui messaggi
-
-                                // Applicare tutti gli aggiornamenti in un'unica operazione
-                                return firebaseService.updateMulti(updates);
-                            });
-                });
-    }
-
-
-
 
 }
\ No newline at end of file
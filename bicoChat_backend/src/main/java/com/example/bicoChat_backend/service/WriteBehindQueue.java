@@ -0,0 +1,164 @@
+package com.example.bicoChat_backend.service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Buffers mutations for a short window and flushes them as a single multi-path update.
+ * Writes to the same path are merged last-writer-wins, a write below a pending path is folded
+ * into the pending value and a write above pending paths replaces them, so the flushed map never
+ * contains overlapping paths (which updateChildren would reject).
+ * Increments ({@link StoreValues#increment}) are not last-writer-wins: merged with a pending value
+ * they are added to it, so no increment is lost by coalescing.
+ */
+public class WriteBehindQueue {
+
+    private final ChatStore chatStore;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Consumer<Map<String, Object>> onAcknowledged;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "firebase-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private Map<String, Object> pending = new LinkedHashMap<>();
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private boolean flushScheduled;
+
+    private final AtomicLong submittedWrites = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+
+    /**
+     * @param chatStore store receiving the flushed batches
+     * @param windowMillis how long a mutation may wait for others, 0 disables buffering
+     * @param maxBatchSize number of pending paths that triggers an immediate flush
+     * @param onAcknowledged called with every acknowledged batch, before the callers are completed
+     */
+    public WriteBehindQueue(ChatStore chatStore, long windowMillis, int maxBatchSize,
+                            Consumer<Map<String, Object>> onAcknowledged) {
+        this.chatStore = chatStore;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.onAcknowledged = onAcknowledged;
+    }
+
+    /**
+     * Queue a group of absolute path writes (null deletes). The group is always flushed in one batch.
+     * @return future completed when the batch containing the group is acknowledged
+     */
+    public CompletableFuture<Void> submit(Map<String, Object> writes) {
+        submittedWrites.incrementAndGet();
+        if (windowMillis <= 0) {
+            Map<String, Object> raw = new HashMap<>();
+            writes.forEach((path, value) -> raw.put(StoreValues.normalizePath(path), StoreValues.toRaw(value)));
+            flushedBatches.incrementAndGet();
+            return chatStore.updateMulti(raw).thenRun(() -> onAcknowledged.accept(raw));
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean flushNow;
+        synchronized (lock) {
+            if (!pending.isEmpty() && pending.size() + writes.size() > maxBatchSize) {
+                flushLocked();
+            }
+            writes.forEach((path, value) -> merge(StoreValues.normalizePath(path), StoreValues.toRaw(value)));
+            waiters.add(future);
+
+            flushNow = pending.size() >= maxBatchSize;
+            if (flushNow) {
+                flushLocked();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Flush whatever is pending right now
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushLocked();
+        }
+    }
+
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    public long getSubmittedWrites() {
+        return submittedWrites.get();
+    }
+
+    public long getFlushedBatches() {
+        return flushedBatches.get();
+    }
+
+    private void merge(String path, Object value) {
+        Iterator<Map.Entry<String, Object>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            String pendingPath = entry.getKey();
+            if (!pendingPath.equals(path) && StoreValues.isAncestorOrSelf(pendingPath, path)) {
+                // fold the deeper write into the pending ancestor value
+                List<String> relative = StoreValues.splitPath(path.substring(pendingPath.length()));
+                Object replaced = StoreValues.valueAt(entry.getValue(), relative);
+                entry.setValue(StoreValues.with(entry.getValue(), relative, 0, StoreValues.resolveIncrements(replaced, value)));
+                return;
+            }
+            if (!pendingPath.equals(path) && StoreValues.isAncestorOrSelf(path, pendingPath)) {
+                // this write replaces the whole pending subtree
+                iterator.remove();
+            }
+        }
+        // remove first so the path moves to the end of the insertion order
+        if (pending.containsKey(path)) {
+            // an increment over a pending value must not overwrite it
+            value = StoreValues.resolveIncrements(pending.remove(path), value);
+        }
+        pending.put(path, value);
+    }
+
+    private void flushLocked() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Object> batch = pending;
+        List<CompletableFuture<Void>> batchWaiters = waiters;
+        pending = new LinkedHashMap<>();
+        waiters = new ArrayList<>();
+        flushedBatches.incrementAndGet();
+
+        CompletableFuture<Void> write;
+        try {
+            write = chatStore.updateMulti(batch);
+        } catch (RuntimeException e) {
+            write = CompletableFuture.failedFuture(e);
+        }
+        write.whenComplete((v, error) -> {
+            if (error == null) {
+                onAcknowledged.accept(batch);
+            }
+            for (CompletableFuture<Void> waiter : batchWaiters) {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(null);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.bicoChat_backend.config;
+
+import com.example.bicoChat_backend.model.Chat;
+import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.ListenerOwnership;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Relay mode end to end, offline: an embedded Artemis broker speaks STOMP on a free port and the
+ * application relays to it (profile relay-test, embedded store). Checks a topic broadcast and a
+ * /user destination, the two paths that must work across instances.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("relay-test")
+class BrokerRelayTest {
+
+    private static final int STOMP_PORT = freePort();
+
+    private static EmbeddedActiveMQ broker;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ChatService chatService;
+
+    @DynamicPropertySource
+    static void relayPort(DynamicPropertyRegistry registry) {
+        registry.add("bicochat.ws.relay.port", () -> STOMP_PORT);
+    }
+
+    @BeforeAll
+    static void startBroker() throws Exception {
+        // /topic/x is a multicast address and /queue/x an anycast one, as in RabbitMQ
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("stomp", "tcp://localhost:" + STOMP_PORT
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+    }
+
+    @AfterAll
+    static void stopBroker() throws Exception {
+        broker.stop();
+    }
+
+    @Test
+    void broadcastsAndUserDestinationsGoThroughTheBroker() throws Exception {
+        String chatId = chatService.createChat(new Chat("Relay", List.of("alice", "bob"))).get(5, TimeUnit.SECONDS).getId();
+
+        StompSession alice = connect("alice");
+        StompSession bob = connect("bob");
+        BlockingQueue<Object> typing = subscribe(alice, "/topic/typing/" + chatId, List.class);
+        BlockingQueue<Object> receipts = subscribe(alice, "/user/queue/receipts", Map.class);
+        Thread.sleep(500); // let the subscriptions reach the broker
+
+        bob.send("/app/chat/" + chatId + "/typing", Map.of("typing", true));
+        // broadcasts are coalesced: a frame is a list of events
+        Object typingFrame = typing.poll(10, TimeUnit.SECONDS);
+        assertInstanceOf(List.class, typingFrame, "typing event not relayed");
+        assertEquals("bob", ((Map<?, ?>) ((List<?>) typingFrame).get(0)).get("userId"));
+
+        alice.send("/app/chat/" + chatId + "/send", Map.of("content", "ciao", "clientRef", "r1"));
+        Object receipt = receipts.poll(10, TimeUnit.SECONDS);
+        assertInstanceOf(Map.class, receipt, "receipt not delivered");
+        assertEquals("sent", ((Map<?, ?>) receipt).get("status"));
+        assertEquals("r1", ((Map<?, ?>) receipt).get("clientRef"));
+
+        alice.disconnect();
+        bob.disconnect();
+    }
+
+    @Test
+    void everyKeyHasExactlyOneOwner() {
+        List<ListenerOwnership> instances = List.of(new ListenerOwnership(0, 3), new ListenerOwnership(1, 3),
+                new ListenerOwnership(2, 3));
+        for (int i = 0; i < 1000; i++) {
+            String key = "chat" + i;
+            assertEquals(1, instances.stream().filter(instance -> instance.owns(key)).count(), key);
+        }
+        assertEquals(1, instances.stream().filter(ListenerOwnership::ownsGlobal).count());
+    }
+
+    private StompSession connect(String uid) throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("X-User-Id", uid);
+        return client.connectAsync("http://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param payloadType type the JSON frames are read as (with Object the converter returns the raw bytes)
+     */
+    private static BlockingQueue<Object> subscribe(StompSession session, String destination, Class<?> payloadType) {
+        BlockingQueue<Object> frames = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return payloadType;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add(payload);
+            }
+        });
+        return frames;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
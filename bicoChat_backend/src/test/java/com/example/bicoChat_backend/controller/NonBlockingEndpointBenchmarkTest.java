@@ -0,0 +1,126 @@
+package com.example.bicoChat_backend.controller;
+
+import com.example.bicoChat_backend.dto.response.ChatSummary;
+import com.example.bicoChat_backend.model.Chat;
+import com.example.bicoChat_backend.service.Bulkhead;
+import com.example.bicoChat_backend.service.ChatService;
+import com.example.bicoChat_backend.service.EmbeddedChatStore;
+import com.example.bicoChat_backend.service.FirebaseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Same burst of GET /api/chats/{chatId} on a small request pool, against a store with a network
+ * round trip: the old handler blocked the request thread on get(), the current one returns the
+ * future. Checks how many requests were waiting on the store at once, not how long the burst took:
+ * in the non-blocking run the store answers only once every handler has returned, so the count does
+ * not depend on the speed of the machine.
+ */
+class NonBlockingEndpointBenchmarkTest {
+
+    private static final int REQUEST_THREADS = 20;
+    private static final int REQUESTS = 1000;
+    private static final long ROUND_TRIP_MS = 50;
+
+    /**
+     * Embedded store that behaves like a remote one, counting the reads in flight. With a gate, reads
+     * are answered when the gate opens instead of after a round trip.
+     */
+    private static class SlowStore extends EmbeddedChatStore {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final CompletableFuture<Void> gate;
+
+        private SlowStore(CompletableFuture<Void> gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> get(String path, Class<T> valueType) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Executor later = gate != null ? ForkJoinPool.commonPool()
+                    : CompletableFuture.delayedExecutor(ROUND_TRIP_MS, TimeUnit.MILLISECONDS);
+            CompletableFuture<Void> ready = gate != null ? gate : CompletableFuture.completedFuture(null);
+            return ready.thenApplyAsync(v -> {
+                inFlight.decrementAndGet();
+                return super.get(path, valueType).join();
+            }, later);
+        }
+    }
+
+    @Test
+    void blockingHandlersWaitOnTheStoreOnePerThread() throws Exception {
+        SlowStore store = new SlowStore(null);
+        List<CompletableFuture<ResponseEntity<ChatSummary>>> responses = burst(store, true);
+        for (CompletableFuture<ResponseEntity<ChatSummary>> response : responses) {
+            assertEquals(200, response.get(60, TimeUnit.SECONDS).getStatusCode().value());
+        }
+        assertTrue(store.maxInFlight.get() <= REQUEST_THREADS, store.maxInFlight.get() + " reads in flight");
+    }
+
+    @Test
+    void nonBlockingHandlersLeaveEveryRequestWaitingOnTheStore() throws Exception {
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        SlowStore store = new SlowStore(gate);
+        List<CompletableFuture<ResponseEntity<ChatSummary>>> responses = burst(store, false);
+        // every handler has returned while no read was answered
+        assertEquals(REQUESTS, store.maxInFlight.get());
+        gate.complete(null);
+        for (CompletableFuture<ResponseEntity<ChatSummary>> response : responses) {
+            assertEquals(200, response.get(60, TimeUnit.SECONDS).getStatusCode().value());
+        }
+    }
+
+    /**
+     * Hand REQUESTS requests to the request pool and wait for the handlers to return
+     * @return the responses, pending until the store answers
+     */
+    private List<CompletableFuture<ResponseEntity<ChatSummary>>> burst(SlowStore store, boolean blocking) throws Exception {
+        Map<String, Object> updates = new HashMap<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            updates.put("chatMeta/chat" + i, new ChatSummary("chat" + i, new Chat("Chat " + i, List.of("alice", "bob")), 0));
+        }
+        store.updateMulti(updates).join();
+        // no cache: every request goes to the store, as for distinct cold paths
+        FirebaseService firebaseService = new FirebaseService(store, Bulkhead.unbounded("reads"), Bulkhead.unbounded("writes"),
+                Bulkhead.unbounded("listener events"), 0, 500, 0, 0, 2);
+        ChatService chatService = new ChatService();
+        ReflectionTestUtils.setField(chatService, "firebaseService", firebaseService);
+        ChatController controller = new ChatController();
+        ReflectionTestUtils.setField(controller, "chatService", chatService);
+
+        ExecutorService requestPool = Executors.newFixedThreadPool(REQUEST_THREADS);
+        List<CompletableFuture<CompletableFuture<ResponseEntity<ChatSummary>>>> handled = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            String chatId = "chat" + i;
+            handled.add(CompletableFuture.supplyAsync(() -> {
+                if (blocking) {
+                    // what the handler used to do: park the request thread for the round trip
+                    try {
+                        return CompletableFuture.completedFuture(ResponseEntity.ok(chatService.getChatById(chatId).get().orElseThrow()));
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new CompletionException(e);
+                    }
+                }
+                return controller.getChatById(chatId);
+            }, requestPool));
+        }
+        List<CompletableFuture<ResponseEntity<ChatSummary>>> responses = new ArrayList<>();
+        for (CompletableFuture<CompletableFuture<ResponseEntity<ChatSummary>>> handler : handled) {
+            responses.add(handler.get(60, TimeUnit.SECONDS));
+        }
+        requestPool.shutdown();
+        return responses;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The failover contract of the static chat ownership (see {@link ListenerOwnership}): while the owner of a
+ * chat is down nothing is stored for it, and the instance that replaces it continues the seqs.
+ */
+class OwnerFailoverTest {
+
+    @Test
+    void sendsToADownOwnerFailWithoutBeingStored() throws Exception {
+        ListenerOwnership second = new ListenerOwnership(1, 2,
+                List.of("http://localhost:" + closedPort(), "http://localhost:" + closedPort()), "secret");
+        String chatId = ownedBy(second, 0);
+        MessageRouter router = new MessageRouter(null, second, new ObjectMapper(), 2000, 0);
+        try {
+            Message message = new Message();
+            message.setSender("alice");
+            message.setContent("ciao");
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> router.send(chatId, message, "r1").get(5, TimeUnit.SECONDS));
+            // 503: the client may retry, nothing was numbered
+            assertInstanceOf(StoreUnavailableException.class, failure.getCause());
+            assertEquals(0, message.getSeq());
+        } finally {
+            router.shutdown();
+        }
+    }
+
+    @Test
+    void replacementOwnerContinuesTheSeqs() throws Exception {
+        EmbeddedChatStore store = new EmbeddedChatStore();
+
+        ChatSequencer crashed = sequencer(store);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(i, crashed.append("chat1", slot -> message("chat1", slot)).get(5, TimeUnit.SECONDS).seq());
+        }
+
+        // same store, nothing in memory: an instance started with the index of the one that went down
+        ChatSequencer replacement = sequencer(store);
+        assertEquals(4, replacement.append("chat1", slot -> message("chat1", slot)).get(5, TimeUnit.SECONDS).seq());
+    }
+
+    private static ChatSequencer sequencer(ChatStore store) {
+        FirebaseService firebaseService = new FirebaseService(store, Bulkhead.unbounded("reads"),
+                Bulkhead.unbounded("writes"), Bulkhead.unbounded("listener events"), 0, 500, 10000, 64L * 1024 * 1024, 2);
+        return new ChatSequencer(firebaseService, new MessageIdGenerator());
+    }
+
+    private static Map<String, Object> message(String chatId, ChatSequencer.Slot slot) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("sender", "alice");
+        message.put("content", "ciao");
+        message.put("seq", slot.seq());
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("chats/" + chatId + "/messages/" + slot.messageId(), message);
+        return updates;
+    }
+
+    private static String ownedBy(ListenerOwnership ownership, int index) {
+        for (int i = 0; ; i++) {
+            if (ownership.ownerOf("chat" + i) == index) {
+                return "chat" + i;
+            }
+        }
+    }
+
+    private static int closedPort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
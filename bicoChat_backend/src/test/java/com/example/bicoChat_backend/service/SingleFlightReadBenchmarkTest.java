@@ -0,0 +1,69 @@
+package com.example.bicoChat_backend.service;
+
+import com.example.bicoChat_backend.model.Chat;
+import com.google.firebase.database.GenericTypeIndicator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Burst of simultaneous readers of the same path (what happens when a message fires the chat,
+ * message and user listeners at once): counts the reads that actually reach the store.
+ */
+class SingleFlightReadBenchmarkTest {
+
+    private static final int READERS = 200;
+    private static final long ROUND_TRIP_MS = 50;
+
+    /**
+     * Embedded store that behaves like a remote one: every read costs a round trip and is counted
+     */
+    private static class SlowCountingStore extends EmbeddedChatStore {
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public <T> CompletableFuture<T> get(String path, Class<T> valueType) {
+            reads.incrementAndGet();
+            Executor later = CompletableFuture.delayedExecutor(ROUND_TRIP_MS, TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> super.get(path, valueType).join(), later);
+        }
+    }
+
+    @Test
+    void burstOfIdenticalReadsIsCollapsed() throws Exception {
+        SlowCountingStore store = new SlowCountingStore();
+        store.set("chats/chat1", new Chat("Bico", List.of("alice", "bob"))).join();
+        FirebaseService firebaseService = new FirebaseService(store, Bulkhead.unbounded("reads"), Bulkhead.unbounded("writes"),
+                Bulkhead.unbounded("listener events"), 0, 500, 10000, 64L * 1024 * 1024, 2);
+
+        ExecutorService listeners = Executors.newFixedThreadPool(READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<String, Chat>>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            results.add(listeners.submit(() -> {
+                start.await();
+                return firebaseService.getWithTypeIndicator("chats", new GenericTypeIndicator<Map<String, Chat>>() {}).get();
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Map<String, Chat>> result : results) {
+            assertEquals("Bico", result.get(5, TimeUnit.SECONDS).get("chat1").getName());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        listeners.shutdown();
+
+        System.out.printf("single-flight: %d reads requested, %d issued to the store, burst served in %d ms%n",
+                firebaseService.getSingleFlightReads().getCalls(), store.reads.get(), elapsedMs);
+        assertEquals(READERS, firebaseService.getSingleFlightReads().getCalls());
+        assertTrue(store.reads.get() <= 5, "expected the burst to collapse, got " + store.reads.get() + " reads");
+    }
+}
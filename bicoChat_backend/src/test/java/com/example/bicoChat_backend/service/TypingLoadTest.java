@@ -0,0 +1,168 @@
+package com.example.bicoChat_backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many users typing in many chats at once, over STOMP through TypingController, on the embedded store:
+ * typing traffic must not reach the store (the participants of the chats are already cached), and the
+ * relayed events must be bounded by the throttle, not by the keystrokes. Every operation on the store is
+ * counted while the users type. A user typing in a chat they are not part of is not relayed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "bicochat.store=embedded",
+        "bicochat.ws.dev-user-header=true",
+        // presence writes on its own timer: keep it out of the measured window
+        "bicochat.presence.flush-ms=600000",
+        // throttle longer than the test, so each user and chat relays "typing" exactly once
+        "bicochat.typing.throttle-ms=60000",
+        "bicochat.typing.expire-ms=120000"
+})
+class TypingLoadTest {
+
+    private static final int USERS = 100;
+    private static final int CHATS = 10;
+    private static final int KEYSTROKES = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @MockitoSpyBean
+    private ChatStore chatStore;
+
+    @Autowired
+    private TypingService typingService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Test
+    void typingTrafficNeverTouchesTheStore() throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+
+        // user u takes part in chat u % CHATS; the participants are read once, as any chat opened before
+        for (int c = 0; c < CHATS; c++) {
+            List<String> participants = new ArrayList<>();
+            for (int u = c; u < USERS; u += CHATS) {
+                participants.add("user" + u);
+            }
+            chatStore.set("chatMeta/chat" + c + "/participants", participants).join();
+            chatService.getParticipants("chat" + c).get(5, TimeUnit.SECONDS);
+        }
+
+        // one observer per chat counts the typing events relayed to it
+        Map<String, AtomicInteger> relayedEvents = new ConcurrentHashMap<>();
+        List<StompSession> sessions = new ArrayList<>();
+        for (int c = 0; c < CHATS; c++) {
+            String chatId = "chat" + c;
+            AtomicInteger events = relayedEvents.computeIfAbsent(chatId, id -> new AtomicInteger());
+            StompSession observer = connect(client, "observer" + c);
+            observer.subscribe("/topic/typing/" + chatId, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return List.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    // broadcasts are coalesced: a frame is a list of events
+                    events.addAndGet(((List<?>) payload).size());
+                }
+            });
+            sessions.add(observer);
+        }
+        List<StompSession> typists = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            typists.add(connect(client, "user" + u));
+        }
+        StompSession intruder = connect(client, "intruder");
+        sessions.addAll(typists);
+        sessions.add(intruder);
+        Thread.sleep(500); // let the subscriptions settle
+
+        Mockito.clearInvocations(chatStore);
+        long begin = System.nanoTime();
+        for (int k = 0; k < KEYSTROKES; k++) {
+            intruder.send("/app/chat/chat0/typing", Map.of("typing", true));
+            for (int u = 0; u < USERS; u++) {
+                typists.get(u).send("/app/chat/chat" + (u % CHATS) + "/typing", Map.of("typing", true));
+            }
+        }
+        for (int u = 0; u < USERS; u++) {
+            String destination = "/app/chat/chat" + (u % CHATS) + "/typing";
+            typists.get(u).send(destination, Map.of("typing", false));
+            typists.get(u).send(destination, Map.of("typing", false));
+        }
+
+        long expectedReceived = (long) USERS * (KEYSTROKES + 2);
+        await(() -> typingService.getReceived() >= expectedReceived);
+        // one "typing" and one "stopped" per user: repeated keystrokes and duplicate stops are dropped
+        int perChat = 2 * USERS / CHATS;
+        await(() -> relayedEvents.values().stream().allMatch(events -> events.get() >= perChat));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        Thread.sleep(200); // anything late would show up below
+
+        Collection<Invocation> storeOperations = Mockito.mockingDetails(chatStore).getInvocations();
+        long writes = storeOperations.stream()
+                .filter(invocation -> List.of("set", "update", "updateMulti", "transaction", "delete")
+                        .contains(invocation.getMethod().getName()))
+                .count();
+        System.out.printf("typing: %d events received, %d relayed, %d store operations (%d writes), %d ms%n",
+                typingService.getReceived(), typingService.getRelayed(), storeOperations.size(), writes, elapsedMs);
+
+        assertEquals(expectedReceived, typingService.getReceived());
+        assertEquals(2L * USERS, typingService.getRelayed());
+        relayedEvents.forEach((chatId, events) -> assertEquals(perChat, events.get(), chatId));
+        assertEquals(0, typingService.getActive());
+        assertEquals(0, writes, "typing traffic wrote to the store");
+        assertTrue(storeOperations.isEmpty(), "typing traffic reached the store: " + storeOperations);
+
+        for (StompSession session : sessions) {
+            session.disconnect();
+        }
+    }
+
+    private StompSession connect(WebSocketStompClient client, String uid) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("X-User-Id", uid);
+        return client.connectAsync("http://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
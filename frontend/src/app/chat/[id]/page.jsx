@@ -73,14 +73,19 @@ export default function ChatPage() {
 
         client = API.createWebSocketClient(
             false,
-            (messagesData) => {
+            (messagesData, { snapshot }) => {
               const filteredMessages = messagesData.filter((msg) => msg.chatId === chatId);
 
               setMessages((prevMessages) => {
                 const prevMap = new Map(prevMessages.map((m) => [m.id, m]));
-                const newMap = new Map();
+                // i delta si applicano ai messaggi già presenti, uno snapshot li sostituisce
+                const newMap = snapshot ? new Map() : new Map(prevMap);
 
                 filteredMessages.forEach((msg) => {
+                  if (msg.deleted) {
+                    newMap.delete(msg.id);
+                    return;
+                  }
                   const prev = prevMap.get(msg.id);
                   newMap.set(msg.id, {
                     ...prev,
@@ -93,7 +98,8 @@ export default function ChatPage() {
                     (a, b) => new Date(a.timestamp) - new Date(b.timestamp)
                 );
               });
-            }
+            },
+            chatId
         );
 
         client.activate();
@@ -1,5 +1,6 @@
 import SockJS from "sockjs-client";
 import { Client } from "@stomp/stompjs";
+import { auth } from "../firebase";
 
 const API_BASE = "http://localhost:8080";
 
@@ -12,6 +13,27 @@ function getCurrentUserId() {
     return localStorage.getItem("currentUserId");
 }
 
+// Header del CONNECT STOMP: il server accetta solo l'ID token Firebase (X-User-Id vale solo in sviluppo)
+async function stompConnectHeaders() {
+    const headers = {};
+    const currentUserId = localStorage.getItem("currentUserId");
+    if (currentUserId) headers["X-User-Id"] = currentUserId;
+    if (auth.currentUser) headers["Authorization"] = `Bearer ${await auth.currentUser.getIdToken()}`;
+    return headers;
+}
+
+// Messaggio nel formato usato dalle pagine, da un MessageEvent o da un Message della REST
+function toClientMessage(chatId, messageId, msg) {
+    return {
+        id: messageId,
+        chatId: chatId,
+        content: msg.content,
+        sender: msg.sender,
+        timestamp: msg.timestamp,
+        read: msg.read,
+    };
+}
+
 
 const API = {
     // 👤 Recupera l'utente corrente da localStorage
@@ -59,55 +81,88 @@ const API = {
     },
 
 // 🔌 Crea client WebSocket
-    createWebSocketClient: (onUsersUpdate = false, onMessagesUpdate = false) => {
-        const socket = new SockJS(`${API_BASE}/ws`);
+    // onUsersUpdate riceve la mappa utenti aggiornata dagli eventi di /user/queue/inbox;
+    // onMessagesUpdate(messaggi, { snapshot }) riceve i messaggi di chatId: delta da /topic/messages/{chatId}
+    // (i cancellati con deleted: true), oppure la chat intera (snapshot) dopo un buco nella sequenza
+    createWebSocketClient: (onUsersUpdate = false, onMessagesUpdate = false, chatId = null) => {
         const client = new Client({
-            webSocketFactory: () => socket,
+            webSocketFactory: () => new SockJS(`${API_BASE}/ws`),
             reconnectDelay: 5000,
             debug: () => {},
         });
 
+        // token rinnovato a ogni (ri)connessione
+        client.beforeConnect = async () => {
+            client.connectHeaders = await stompConnectHeaders();
+        };
+
+        let connectedBefore = false;
+
         client.onConnect = () => {
             console.log("✅ WebSocket connesso!");
 
             if (onUsersUpdate) {
                 console.log("✅ WebSocket dentro on user update!");
-                client.subscribe("/topic/users", (message) => {
-                    console.log("📩 Ricevuto messaggio WebSocket (Utenti):", message.body);
-                    let usersData = JSON.parse(message.body);
-                    if (Array.isArray(usersData)) {
-                        usersData = Object.fromEntries(usersData.map((u) => [u.id, u]));
-                    }
-                    data.users = usersData;
-                    onUsersUpdate(usersData);
+                // ogni frame è una lista di eventi: anteprime delle chat dell'utente e presenza degli amici
+                client.subscribe("/user/queue/inbox", (message) => {
+                    console.log("📩 Ricevuto messaggio WebSocket (Inbox):", message.body);
+                    const events = JSON.parse(message.body);
+                    const currentUserId = localStorage.getItem("currentUserId");
+                    const user = data.users[currentUserId]?.user;
+                    if (!user) return;
+
+                    user.chatUser = { ...(user.chatUser || {}) };
+                    events.forEach((event) => {
+                        if (event.type === "chat") {
+                            user.chatUser[event.chatId] = event.chat;
+                        } else if (event.type === "chatRemoved") {
+                            delete user.chatUser[event.chatId];
+                        }
+                    });
+                    onUsersUpdate({ ...data.users });
                 });
+
+                // dopo una riconnessione (sessione chiusa perché lenta, rete) gli eventi persi si recuperano ricaricando
+                if (connectedBefore) onUsersUpdate({ ...data.users });
             }
 
-            if (onMessagesUpdate) {
+            if (onMessagesUpdate && chatId) {
                 console.log("✅ WebSocket dentro onMessagesUpdate!");
-                client.subscribe("/topic/chats", (message) => {
+                const reload = () => API.getMessagesByChatId(chatId)
+                    .then((messages) => onMessagesUpdate(
+                        messages.map((msg) => toClientMessage(chatId, msg.id, msg)), { snapshot: true }))
+                    .catch(console.error);
+
+                // seq cresce di uno per evento dentro la stessa epoch: un buco o una nuova epoch vuol dire eventi persi
+                let epoch = null;
+                let lastSeq = 0;
+                client.subscribe(`/topic/messages/${chatId}`, (message) => {
                     console.log("📩 Ricevuto messaggio WebSocket (Messaggi):", message.body);
-                    let rawChats = JSON.parse(message.body);
-
-                    // Estrai tutti i messaggi da ogni chat
-                    const normalizedMessages = rawChats.flatMap((chatEntry) => {
-                        const chatId = chatEntry.id;
-                        const messages = chatEntry.chat?.messages || {};
-
-                        return Object.entries(messages).map(([messageId, msg]) => ({
-                            id: messageId,
-                            chatId: chatId,
-                            content: msg.content,
-                            sender: msg.sender,
-                            timestamp: msg.timestamp,
-                            read: msg.read,
-                        }));
+                    const events = JSON.parse(message.body);
+                    let missed = false;
+                    events.forEach((event) => {
+                        if (event.epoch !== epoch) {
+                            missed = missed || epoch !== null;
+                            epoch = event.epoch;
+                        } else if (event.seq !== lastSeq + 1) {
+                            missed = true;
+                        }
+                        lastSeq = event.seq;
                     });
 
-                    console.log("🧩 Messaggi normalizzati:", normalizedMessages);
-                    onMessagesUpdate(normalizedMessages);
+                    if (missed) {
+                        reload();
+                        return;
+                    }
+                    onMessagesUpdate(events.map((event) => event.type === "deleted"
+                        ? { id: event.messageId, chatId: event.chatId, deleted: true }
+                        : toClientMessage(event.chatId, event.messageId, event.message)), { snapshot: false });
                 });
+
+                // dopo una riconnessione gli eventi nel frattempo sono persi
+                if (connectedBefore) reload();
             }
+            connectedBefore = true;
         };
 
         return client;
@@ -126,12 +181,17 @@ const API = {
         return fetch(`${API_BASE}/api/users/${userId}`).then((res) => res.json());
     },
 
-    sendMessage: (chatId, content, sender) => {
-        return fetch(`${API_BASE}/api/messages/${chatId}/send`, {
+    // clientRef identifica l'invio: un 504 non esclude che il messaggio sia stato salvato, quindi si riprova
+    // una volta con lo stesso clientRef e il server risponde con la ricevuta del primo tentativo
+    sendMessage: async (chatId, content, sender) => {
+        const clientRef = crypto.randomUUID();
+        const send = () => fetch(`${API_BASE}/api/messages/${chatId}/send`, {
             method: "POST",
             headers: { "Content-Type": "application/json" },
-            body: JSON.stringify({ content, sender }),
+            body: JSON.stringify({ content, sender, clientRef }),
         });
+        const res = await send();
+        return res.status === 504 ? send() : res;
     },
 
     updateMessage: (chatId, messageId, newContent) => {